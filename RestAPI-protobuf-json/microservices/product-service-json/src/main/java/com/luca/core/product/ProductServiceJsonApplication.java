@@ -1,9 +1,11 @@
 package com.luca.core.product;
 
 import com.luca.core.product.persistence.ProductEntity;
+import com.luca.core.product.persistence.ProductLayout;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.ConfigurableApplicationContext;
@@ -35,9 +37,17 @@ public class ProductServiceJsonApplication {
     @Autowired
     MongoOperations mongoTemplate;
 
+    @Value("${app.persistence.layout:classic}")
+    String layout;
+
     @EventListener(ContextRefreshedEvent.class)
     public void initIndicesAfterStartup() {
 
+        // productId is the _id of the keyed layout, its unique index is implicit
+        if (ProductLayout.of(layout) == ProductLayout.KEYED) {
+            return;
+        }
+
         MappingContext<? extends MongoPersistentEntity<?>, MongoPersistentProperty> mappingContext = mongoTemplate.getConverter().getMappingContext();
         IndexResolver resolver = new MongoPersistentEntityIndexResolver(mappingContext);
 
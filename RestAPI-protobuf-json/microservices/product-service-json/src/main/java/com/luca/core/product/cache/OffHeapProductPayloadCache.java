@@ -0,0 +1,334 @@
+package com.luca.core.product.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * {@link ProductPayloadCache} that keeps the payloads outside the Java heap.
+ *
+ * Memory is carved into fixed size slots inside direct {@link ByteBuffer} slabs that are
+ * allocated on demand until "app.cache.off-heap.max-bytes" is reached. A slot holds the
+ * 4-byte lengths of the entity tag and the body, followed by the ASCII tag and the body;
+ * payloads that do not fit into one slot are not cached. When all slots are in use, a CLOCK sweep evicts a slot that has not been read
+ * since the previous sweep.
+ *
+ * The productId to slot index is an open addressing table of primitive ints, so the heap
+ * footprint is about 30 bytes per slot regardless of the payload sizes or the number of
+ * products. All access goes through one lock; the critical sections are a table probe
+ * and a copy of one payload.
+ *
+ * Note that the JVM limits direct memory with -XX:MaxDirectMemorySize, which defaults
+ * to the maximum heap size.
+ */
+@Component
+@ConditionalOnProperty(name = "app.cache.payload.store", havingValue = "off-heap")
+public class OffHeapProductPayloadCache implements ProductPayloadCache {
+
+  private static final int HEADER_BYTES = 8;
+
+  private static final int NO_SLOT = -1;
+
+  private final int slotBytes;
+
+  private final int slotsPerSlab;
+
+  private final int slotCount;
+
+  private final int ttlSeconds;
+
+  private final long startedAt = System.nanoTime();
+
+  private final ByteBuffer[] slabs;
+
+  private final int[] slotKeys;
+
+  private final int[] slotWrittenAt;
+
+  private final boolean[] slotReferenced;
+
+  private final int[] freeSlots;
+
+  private int freeSlotCount;
+
+  private int nextFreshSlot;
+
+  private int clockHand;
+
+  private int entries;
+
+  private final SlotIndex index;
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  private final AtomicLong invalidations = new AtomicLong();
+
+  private final Counter hits;
+
+  private final Counter misses;
+
+  private final Counter evictions;
+
+  private final Counter rejections;
+
+  @Autowired
+  public OffHeapProductPayloadCache(
+    @Value("${app.cache.off-heap.max-bytes:128MB}") DataSize maxBytes,
+    @Value("${app.cache.off-heap.slab-bytes:4MB}") DataSize slabBytes,
+    @Value("${app.cache.off-heap.slot-bytes:256B}") DataSize slotBytes,
+    @Value("${app.cache.ttl:10m}") Duration ttl,
+    MeterRegistry registry) {
+
+    if (slotBytes.toBytes() <= HEADER_BYTES || slabBytes.toBytes() < slotBytes.toBytes()
+      || slabBytes.toBytes() > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Invalid off-heap cache geometry, slab: " + slabBytes + ", slot: " + slotBytes);
+    }
+
+    this.slotBytes = (int) slotBytes.toBytes();
+    this.slotsPerSlab = (int) (slabBytes.toBytes() / this.slotBytes);
+    int slabCount = (int) Math.max(1, maxBytes.toBytes() / ((long) slotsPerSlab * this.slotBytes));
+    this.slotCount = Math.multiplyExact(slabCount, slotsPerSlab);
+    this.ttlSeconds = (int) Math.min(Integer.MAX_VALUE, ttl.toSeconds());
+
+    this.slabs = new ByteBuffer[slabCount];
+    this.slotKeys = new int[slotCount];
+    this.slotWrittenAt = new int[slotCount];
+    this.slotReferenced = new boolean[slotCount];
+    this.freeSlots = new int[slotCount];
+    this.index = new SlotIndex(slotCount);
+
+    String name = "product-payloads-off-heap";
+    hits = Counter.builder("cache.gets").tag("cache", name).tag("result", "hit").register(registry);
+    misses = Counter.builder("cache.gets").tag("cache", name).tag("result", "miss").register(registry);
+    evictions = Counter.builder("cache.evictions").tag("cache", name).register(registry);
+    rejections = Counter.builder("cache.puts.rejected")
+      .description("Payloads larger than one slot")
+      .tag("cache", name)
+      .register(registry);
+    Gauge.builder("cache.size", this, c -> c.entries).tag("cache", name).register(registry);
+    Gauge.builder("cache.off-heap.allocated", this, OffHeapProductPayloadCache::allocatedBytes)
+      .baseUnit("bytes")
+      .tag("cache", name)
+      .register(registry);
+  }
+
+  @Override
+  public ProductPayload get(int productId) {
+    lock.lock();
+    try {
+      int slot = index.get(productId);
+      if (slot == NO_SLOT) {
+        misses.increment();
+        return null;
+      }
+      if (now() - slotWrittenAt[slot] > ttlSeconds) {
+        release(productId, slot);
+        misses.increment();
+        return null;
+      }
+
+      slotReferenced[slot] = true;
+      ByteBuffer slab = slabs[slot / slotsPerSlab];
+      int offset = (slot % slotsPerSlab) * slotBytes;
+      byte[] eTag = new byte[slab.getInt(offset)];
+      byte[] body = new byte[slab.getInt(offset + 4)];
+      slab.get(offset + HEADER_BYTES, eTag);
+      slab.get(offset + HEADER_BYTES + eTag.length, body);
+      hits.increment();
+      return new ProductPayload(new String(eTag, StandardCharsets.US_ASCII), body);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public long stamp() {
+    return invalidations.get();
+  }
+
+  @Override
+  public void put(int productId, ProductPayload payload, long stamp) {
+    byte[] eTag = payload.getETag().getBytes(StandardCharsets.US_ASCII);
+    byte[] body = payload.getBody();
+    if (eTag.length + body.length > slotBytes - HEADER_BYTES) {
+      rejections.increment();
+      return;
+    }
+
+    lock.lock();
+    try {
+      if (invalidations.get() != stamp) {
+        return;
+      }
+
+      int slot = index.get(productId);
+      if (slot == NO_SLOT) {
+        slot = allocateSlot();
+        index.put(productId, slot);
+        slotKeys[slot] = productId;
+        entries++;
+      }
+
+      ByteBuffer slab = slabs[slot / slotsPerSlab];
+      int offset = (slot % slotsPerSlab) * slotBytes;
+      slab.putInt(offset, eTag.length);
+      slab.putInt(offset + 4, body.length);
+      slab.put(offset + HEADER_BYTES, eTag);
+      slab.put(offset + HEADER_BYTES + eTag.length, body);
+      slotWrittenAt[slot] = now();
+      slotReferenced[slot] = false;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void invalidate(int productId) {
+    lock.lock();
+    try {
+      invalidations.incrementAndGet();
+      int slot = index.get(productId);
+      if (slot != NO_SLOT) {
+        release(productId, slot);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Seconds since this cache was created, stored per slot as an int.
+   */
+  private int now() {
+    return (int) ((System.nanoTime() - startedAt) / 1_000_000_000L);
+  }
+
+  private long allocatedBytes() {
+    long allocated = 0;
+    for (ByteBuffer slab : slabs) {
+      if (slab != null) {
+        allocated += slab.capacity();
+      }
+    }
+    return allocated;
+  }
+
+  private int allocateSlot() {
+    if (freeSlotCount > 0) {
+      return freeSlots[--freeSlotCount];
+    }
+    if (nextFreshSlot < slotCount) {
+      int slot = nextFreshSlot++;
+      int slab = slot / slotsPerSlab;
+      if (slabs[slab] == null) {
+        slabs[slab] = ByteBuffer.allocateDirect(slotsPerSlab * slotBytes);
+      }
+      return slot;
+    }
+    return evictSlot();
+  }
+
+  /**
+   * CLOCK: clears reference bits until a slot that was not read since the last pass is found.
+   */
+  private int evictSlot() {
+    while (true) {
+      int slot = clockHand;
+      clockHand = (clockHand + 1) % slotCount;
+      if (slotReferenced[slot]) {
+        slotReferenced[slot] = false;
+      } else {
+        index.remove(slotKeys[slot]);
+        entries--;
+        evictions.increment();
+        return slot;
+      }
+    }
+  }
+
+  private void release(int productId, int slot) {
+    index.remove(productId);
+    slotReferenced[slot] = false;
+    freeSlots[freeSlotCount++] = slot;
+    entries--;
+  }
+
+  /**
+   * Open addressing productId to slot table with linear probing and backward shift deletion.
+   * Sized to at most 50% load, the caller guarantees it never holds more than slotCount keys.
+   */
+  private static final class SlotIndex {
+
+    private final int[] keys;
+
+    private final int[] slots;
+
+    private final int mask;
+
+    SlotIndex(int maxEntries) {
+      int capacity = Integer.highestOneBit(Math.max(2, maxEntries) * 2 - 1) << 1;
+      keys = new int[capacity];
+      slots = new int[capacity];
+      mask = capacity - 1;
+      Arrays.fill(slots, NO_SLOT);
+    }
+
+    int get(int key) {
+      for (int i = hash(key); ; i = (i + 1) & mask) {
+        if (slots[i] == NO_SLOT) {
+          return NO_SLOT;
+        }
+        if (keys[i] == key) {
+          return slots[i];
+        }
+      }
+    }
+
+    void put(int key, int slot) {
+      int i = hash(key);
+      while (slots[i] != NO_SLOT && keys[i] != key) {
+        i = (i + 1) & mask;
+      }
+      keys[i] = key;
+      slots[i] = slot;
+    }
+
+    void remove(int key) {
+      int i = hash(key);
+      while (slots[i] != NO_SLOT && keys[i] != key) {
+        i = (i + 1) & mask;
+      }
+      if (slots[i] == NO_SLOT) {
+        return;
+      }
+
+      // Shift following entries of the probe sequence back into the hole
+      int hole = i;
+      for (int j = (hole + 1) & mask; slots[j] != NO_SLOT; j = (j + 1) & mask) {
+        int home = hash(keys[j]);
+        if (((j - home) & mask) >= ((j - hole) & mask)) {
+          keys[hole] = keys[j];
+          slots[hole] = slots[j];
+          hole = j;
+        }
+      }
+      slots[hole] = NO_SLOT;
+    }
+
+    private int hash(int key) {
+      int h = key * 0x9E3779B9;
+      return (h ^ (h >>> 16)) & mask;
+    }
+  }
+}
@@ -0,0 +1,201 @@
+package com.luca.core.product.migration;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Online copy of a classic layout collection into a keyed layout collection, see
+ * {@link com.luca.core.product.persistence.ProductLayout}.
+ *
+ * Enabled by "app.migration.keyed-layout.enabled", runs once the application is ready while
+ * the service keeps serving from the source collection. The productId range of the source is
+ * split into "parallelism" partitions, copied concurrently in batches of "batch-size"
+ * upserts keyed by productId. Target documents whose product no longer exists in the source
+ * are removed afterwards.
+ *
+ * A run is idempotent and only changes documents that differ. Repeat it, the last time with
+ * writes paused, until it reports no changes; then switch "app.persistence.layout" to keyed
+ * and "app.persistence.collection" to the target collection.
+ */
+@Component
+@ConditionalOnProperty(name = "app.migration.keyed-layout.enabled", havingValue = "true")
+public class KeyedLayoutMigration {
+
+  private static final Logger LOG = LoggerFactory.getLogger(KeyedLayoutMigration.class);
+
+  private final String source;
+
+  private final String target;
+
+  private final int batchSize;
+
+  private final int parallelism;
+
+  private final ReactiveMongoOperations mongoTemplate;
+
+  private Disposable run;
+
+  @Autowired
+  public KeyedLayoutMigration(
+    @Value("${app.migration.keyed-layout.source-collection:products}") String source,
+    @Value("${app.migration.keyed-layout.target-collection:products_keyed}") String target,
+    @Value("${app.migration.keyed-layout.batch-size:1000}") int batchSize,
+    @Value("${app.migration.keyed-layout.parallelism:4}") int parallelism,
+    ReactiveMongoOperations mongoTemplate) {
+
+    this.source = source;
+    this.target = target;
+    this.batchSize = batchSize;
+    this.parallelism = parallelism;
+    this.mongoTemplate = mongoTemplate;
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void migrateAfterStartup() {
+    long startedAt = System.nanoTime();
+    LOG.info("Migrating products from {} to keyed layout collection {}", source, target);
+
+    run = copy()
+      .zipWhen(copied -> prune())
+      .subscribeOn(Schedulers.boundedElastic())
+      .subscribe(
+        counts -> LOG.info("Migrated products from {} to {} in {} ms: {} copied, {} removed{}",
+          source, target, (System.nanoTime() - startedAt) / 1_000_000, counts.getT1(), counts.getT2(),
+          counts.getT1() + counts.getT2() == 0 ? ", collections are in sync" : ""),
+        e -> LOG.warn("Failed to migrate products from {} to {}: {}", source, target, e.toString()));
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (run != null) {
+      run.dispose();
+    }
+  }
+
+  /**
+   * @return the number of documents inserted or replaced in the target
+   */
+  Mono<Long> copy() {
+    return Mono.zip(boundary(Sort.Direction.ASC), boundary(Sort.Direction.DESC))
+      .flatMapMany(bounds -> {
+        long min = bounds.getT1();
+        long span = (bounds.getT2() - min) / parallelism + 1;
+        return Flux.range(0, parallelism)
+          .flatMap(partition -> copyRange(min + partition * span, min + (partition + 1) * span), parallelism);
+      })
+      .reduce(0L, Long::sum);
+  }
+
+  /**
+   * Removes target documents without a source product.
+   *
+   * @return the number of documents removed
+   */
+  Mono<Long> prune() {
+    return keyset(target, "_id", null, false, null)
+      .concatMap(batch -> {
+        List<Object> productIds = batch.stream().map(document -> document.get("_id")).toList();
+        Query existing = Query.query(Criteria.where("productId").in(productIds));
+        existing.fields().include("productId").exclude("_id");
+        return mongoTemplate.find(existing, Document.class, source)
+          .map(document -> document.get("productId"))
+          .collect(HashSet::new, Set::add)
+          .flatMap(found -> {
+            List<Object> missing = productIds.stream().filter(productId -> !found.contains(productId)).toList();
+            return missing.isEmpty()
+              ? Mono.just(0L)
+              : mongoTemplate.remove(Query.query(Criteria.where("_id").in(missing)), target)
+                .map(result -> result.getDeletedCount());
+          });
+      })
+      .reduce(0L, Long::sum);
+  }
+
+  /**
+   * Copies the products with a productId in [from, to).
+   */
+  private Mono<Long> copyRange(long from, long to) {
+    return keyset(source, "productId", from, true, to)
+      .concatMap(batch -> upsert(batch.stream().map(KeyedLayoutMigration::toKeyed).toList()))
+      .reduce(0L, Long::sum);
+  }
+
+  private Mono<Long> upsert(List<Document> documents) {
+    List<ReplaceOneModel<Document>> replacements = documents.stream()
+      .map(document -> new ReplaceOneModel<>(Filters.eq("_id", document.get("_id")), document,
+        new ReplaceOptions().upsert(true)))
+      .toList();
+    return mongoTemplate.getCollection(target)
+      .flatMap(collection -> Mono.<BulkWriteResult>from(
+        collection.bulkWrite(replacements, new BulkWriteOptions().ordered(false))))
+      .map(result -> (long) result.getModifiedCount() + result.getUpserts().size());
+  }
+
+  /**
+   * Reads the documents with a key in the range in batches, in key order; null bounds are open.
+   */
+  private Flux<List<Document>> keyset(String collection, String key, Object from, boolean inclusive, Object to) {
+    Criteria range = Criteria.where(key);
+    if (from != null) {
+      range = inclusive ? range.gte(from) : range.gt(from);
+    }
+    if (to != null) {
+      range = range.lt(to);
+    }
+    if (from == null && to == null) {
+      range = range.exists(true);
+    }
+
+    return mongoTemplate.find(Query.query(range).with(Sort.by(key)).limit(batchSize), Document.class, collection)
+      .collectList()
+      .filter(batch -> !batch.isEmpty())
+      .flatMapMany(batch -> batch.size() < batchSize
+        ? Flux.just(batch)
+        : Flux.just(batch).concatWith(Flux.defer(
+          () -> keyset(collection, key, batch.get(batch.size() - 1).get(key), false, to))));
+  }
+
+  private Mono<Long> boundary(Sort.Direction direction) {
+    Query query = new Query().with(Sort.by(direction, "productId")).limit(1);
+    query.fields().include("productId");
+    return mongoTemplate.findOne(query, Document.class, source)
+      .map(document -> document.get("productId", Number.class).longValue());
+  }
+
+  /**
+   * { _id: ObjectId, productId, ... } becomes { _id: productId, oid: ObjectId, ... }.
+   */
+  private static Document toKeyed(Document document) {
+    Document keyed = new Document("_id", document.get("productId")).append("oid", document.get("_id"));
+    document.forEach((field, value) -> {
+      if (!field.equals("_id") && !field.equals("productId") && !field.equals("_class")) {
+        keyed.append(field, value);
+      }
+    });
+    return keyed;
+  }
+}
@@ -0,0 +1,136 @@
+package com.luca.core.product.persistence;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckOutStartedEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionPoolListener;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mongo.MongoClientFactory;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.autoconfigure.mongo.ReactiveMongoClientFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Creates the blocking and the reactive client in place of Spring Boot's, with every
+ * MongoClientSettingsBuilderCustomizer applied as Boot does, and sizes the pool of the client
+ * selected by "app.persistence.mode" from "app.persistence.pool". The other client keeps the
+ * driver defaults, so it opens no connection until it is used.
+ *
+ * Pool size, in-use connections and per-command latency come from the listeners Spring Boot
+ * registers: "mongodb.driver.pool.size", "mongodb.driver.pool.checkedout",
+ * "mongodb.driver.pool.waitqueuesize" and "mongodb.driver.commands" tagged with command.
+ * The wait for a connection of the blocking client is added as "mongodb.driver.pool.checkout",
+ * tagged with server.address and status. Histograms are enabled in application.yml.
+ */
+@Configuration
+public class MongoPoolConfiguration {
+
+  private final String mode;
+  private final int minSize;
+  private final int maxSize;
+  private final Duration maxWaitTime;
+
+  @Autowired
+  public MongoPoolConfiguration(
+    @Value("${app.persistence.mode:reactive}") String mode,
+    @Value("${app.persistence.pool.min-size:0}") int minSize,
+    @Value("${app.persistence.pool.max-size:100}") int maxSize,
+    @Value("${app.persistence.pool.max-wait-time:2m}") Duration maxWaitTime) {
+
+    this.mode = mode;
+    this.minSize = minSize;
+    this.maxSize = maxSize;
+    this.maxWaitTime = maxWaitTime;
+  }
+
+  @Bean
+  public MongoClient blockingMongoClient(
+    ObjectProvider<MongoClientSettingsBuilderCustomizer> customizers,
+    MongoClientSettings settings,
+    MeterRegistry registry) {
+
+    List<MongoClientSettingsBuilderCustomizer> all = customizers("blocking", customizers);
+    all.add(builder -> builder.applyToConnectionPoolSettings(pool -> pool
+      .addConnectionPoolListener(new CheckoutTimer(registry))));
+    return new MongoClientFactory(all).createMongoClient(settings);
+  }
+
+  @Bean
+  public com.mongodb.reactivestreams.client.MongoClient reactiveMongoClient(
+    ObjectProvider<MongoClientSettingsBuilderCustomizer> customizers,
+    MongoClientSettings settings) {
+
+    return new ReactiveMongoClientFactory(customizers("reactive", customizers)).createMongoClient(settings);
+  }
+
+  private List<MongoClientSettingsBuilderCustomizer> customizers(
+    String clientMode, ObjectProvider<MongoClientSettingsBuilderCustomizer> customizers) {
+
+    List<MongoClientSettingsBuilderCustomizer> all = new ArrayList<>(customizers.orderedStream().toList());
+    if (clientMode.equals(mode)) {
+      all.add(builder -> builder.applyToConnectionPoolSettings(pool -> pool
+        .minSize(minSize)
+        .maxSize(maxSize)
+        .maxWaitTime(maxWaitTime.toMillis(), TimeUnit.MILLISECONDS)));
+    }
+    return all;
+  }
+
+  /**
+   * The blocking pool fires the start and the end of a checkout on the calling thread, so each
+   * checkout is timed from a thread-local start. The reactive pool completes checkouts on its
+   * own threads and the 4.9 driver's events carry no elapsed time, so it is not timed.
+   */
+  static final class CheckoutTimer implements ConnectionPoolListener {
+
+    private final MeterRegistry registry;
+
+    private final ThreadLocal<Long> startedAt = new ThreadLocal<>();
+
+    CheckoutTimer(MeterRegistry registry) {
+      this.registry = registry;
+    }
+
+    @Override
+    public void connectionCheckOutStarted(ConnectionCheckOutStartedEvent event) {
+      startedAt.set(System.nanoTime());
+    }
+
+    @Override
+    public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+      record(event.getConnectionId().getServerId(), "success");
+    }
+
+    @Override
+    public void connectionCheckOutFailed(ConnectionCheckOutFailedEvent event) {
+      record(event.getServerId(), event.getReason().name().toLowerCase());
+    }
+
+    private void record(ServerId serverId, String status) {
+      Long started = startedAt.get();
+      if (started == null) {
+        return;
+      }
+      startedAt.remove();
+
+      Timer.builder("mongodb.driver.pool.checkout")
+        .description("Time waited for a pooled connection of the blocking client")
+        .tag("server.address", serverId.getAddress().toString())
+        .tag("status", status)
+        .register(registry)
+        .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package com.luca.core.product.persistence;
+
+import java.time.Duration;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Opens "app.persistence.pool.min-size" connections of the client used by
+ * "app.persistence.mode" at startup with as many concurrent pings, so the first requests
+ * do not pay for connection handshakes. The driver keeps the pool at the minimum size
+ * afterwards. A failed warmup is logged, connections are then opened on demand.
+ */
+@Component
+public class MongoPoolWarmup {
+
+  private static final Logger LOG = LoggerFactory.getLogger(MongoPoolWarmup.class);
+
+  private static final Document PING = new Document("ping", 1);
+
+  private final ReactiveMongoOperations reactiveMongoTemplate;
+
+  private final MongoOperations mongoTemplate;
+
+  private final boolean blocking;
+
+  private final int minSize;
+
+  private final Duration timeout;
+
+  @Autowired
+  public MongoPoolWarmup(ReactiveMongoOperations reactiveMongoTemplate, MongoOperations mongoTemplate,
+    @Value("${app.persistence.mode:reactive}") String mode,
+    @Value("${app.persistence.pool.min-size:0}") int minSize,
+    @Value("${app.persistence.pool.warmup-timeout:10s}") Duration timeout) {
+
+    this.reactiveMongoTemplate = reactiveMongoTemplate;
+    this.mongoTemplate = mongoTemplate;
+    this.blocking = mode.equals("blocking");
+    this.minSize = minSize;
+    this.timeout = timeout;
+  }
+
+  @EventListener(ContextRefreshedEvent.class)
+  public void warmupAfterStartup() {
+    if (minSize < 1) {
+      return;
+    }
+
+    long startedAt = System.nanoTime();
+    try {
+      Flux.range(0, minSize)
+        .flatMap(i -> ping(), minSize)
+        .then()
+        .block(timeout);
+      LOG.info("Warmed up the MongoDB connection pool with {} concurrent pings in {} ms",
+        minSize, (System.nanoTime() - startedAt) / 1_000_000);
+    } catch (RuntimeException e) {
+      LOG.warn("Failed to open {} MongoDB connections at startup: {}", minSize, e.toString());
+    }
+  }
+
+  private Mono<Document> ping() {
+    return blocking
+      ? Mono.fromCallable(() -> mongoTemplate.executeCommand(PING)).subscribeOn(Schedulers.boundedElastic())
+      : reactiveMongoTemplate.executeCommand(PING);
+  }
+}
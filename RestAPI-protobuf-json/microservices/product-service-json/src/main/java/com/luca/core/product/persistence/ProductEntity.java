@@ -5,7 +5,11 @@ import org.springframework.data.annotation.Version;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
-@Document(collection = "products")
+/**
+ * Stored in the collection named by "app.persistence.collection", keyed as selected by
+ * "app.persistence.layout", see {@link ProductLayout}.
+ */
+@Document(collection = "#{@environment.getProperty('app.persistence.collection', 'products')}")
 public class ProductEntity {
 
   @Id private String id;
@@ -0,0 +1,144 @@
+package com.luca.core.product.persistence;
+
+import com.mongodb.MongoClientSettings;
+import org.bson.BsonInt32;
+import org.bson.BsonObjectId;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonValue;
+import org.bson.BsonWriter;
+import org.bson.codecs.CollectibleCodec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.types.ObjectId;
+
+/**
+ * Reads and writes {@link ProductEntity} straight from and to BSON, field by field, in the
+ * document shape of the given {@link ProductLayout}; used by the find and insert paths of
+ * the persistence instead of the reflective mapping converter.
+ *
+ * Documents are compatible with the converter both ways. Unknown fields, such as the
+ * "_class" the converter writes, are skipped; the codec writes none, ProductEntity has no
+ * subtypes to tell apart.
+ */
+public final class ProductEntityCodec implements CollectibleCodec<ProductEntity> {
+
+  private final ProductLayout layout;
+
+  public ProductEntityCodec(ProductLayout layout) {
+    this.layout = layout;
+  }
+
+  /**
+   * The codec, ahead of the driver defaults used for filters and sorts.
+   */
+  public static CodecRegistry registry(ProductLayout layout) {
+    return CodecRegistries.fromRegistries(
+      CodecRegistries.fromCodecs(new ProductEntityCodec(layout)),
+      MongoClientSettings.getDefaultCodecRegistry());
+  }
+
+  @Override
+  public void encode(BsonWriter writer, ProductEntity entity, EncoderContext encoderContext) {
+    writer.writeStartDocument();
+    if (layout == ProductLayout.KEYED) {
+      writer.writeInt32("_id", entity.getProductId());
+      if (entity.getId() != null) {
+        writer.writeObjectId("oid", new ObjectId(entity.getId()));
+      }
+    } else {
+      if (entity.getId() != null) {
+        writer.writeObjectId("_id", new ObjectId(entity.getId()));
+      }
+      writer.writeInt32("productId", entity.getProductId());
+    }
+    if (entity.getVersion() != null) {
+      writer.writeInt32("version", entity.getVersion());
+    }
+    if (entity.getName() != null) {
+      writer.writeString("name", entity.getName());
+    }
+    writer.writeInt32("weight", entity.getWeight());
+    writer.writeEndDocument();
+  }
+
+  @Override
+  public ProductEntity decode(BsonReader reader, DecoderContext decoderContext) {
+    ProductEntity entity = new ProductEntity();
+    reader.readStartDocument();
+    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+      String field = reader.readName();
+      if (reader.getCurrentBsonType() == BsonType.NULL) {
+        reader.readNull();
+        continue;
+      }
+
+      if (field.equals(layout.keyField())) {
+        entity.setProductId(readInt(reader));
+      } else if (field.equals(layout.idField())) {
+        entity.setId(reader.readObjectId().toHexString());
+      } else {
+        switch (field) {
+          case "version":
+            entity.setVersion(readInt(reader));
+            break;
+          case "name":
+            entity.setName(reader.readString());
+            break;
+          case "weight":
+            entity.setWeight(readInt(reader));
+            break;
+          default:
+            reader.skipValue();
+        }
+      }
+    }
+    reader.readEndDocument();
+    return entity;
+  }
+
+  @Override
+  public Class<ProductEntity> getEncoderClass() {
+    return ProductEntity.class;
+  }
+
+  /**
+   * Whether the generated ObjectId is set; in the keyed layout it is not the _id, but
+   * generated the same way.
+   */
+  @Override
+  public boolean documentHasId(ProductEntity entity) {
+    return entity.getId() != null;
+  }
+
+  @Override
+  public ProductEntity generateIdIfAbsentFromDocument(ProductEntity entity) {
+    if (entity.getId() == null) {
+      entity.setId(new ObjectId().toHexString());
+    }
+    return entity;
+  }
+
+  @Override
+  public BsonValue getDocumentId(ProductEntity entity) {
+    return layout == ProductLayout.KEYED
+      ? new BsonInt32(entity.getProductId())
+      : new BsonObjectId(new ObjectId(entity.getId()));
+  }
+
+  /**
+   * Numbers written by other clients may not be int32.
+   */
+  private static int readInt(BsonReader reader) {
+    switch (reader.getCurrentBsonType()) {
+      case INT64:
+        return (int) reader.readInt64();
+      case DOUBLE:
+        return (int) reader.readDouble();
+      default:
+        return reader.readInt32();
+    }
+  }
+}
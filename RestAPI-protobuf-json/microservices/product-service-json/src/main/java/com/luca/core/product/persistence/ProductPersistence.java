@@ -0,0 +1,87 @@
+package com.luca.core.product.persistence;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking view of the product store used by the web layer.
+ *
+ * The implementation is selected by the property "app.persistence.mode":
+ * "reactive" (default) uses the reactive Mongo driver end to end, "blocking"
+ * the blocking driver. Documents are keyed as selected by "app.persistence.layout",
+ * see {@link ProductLayout}.
+ */
+public interface ProductPersistence {
+
+  Mono<ProductEntity> findByProductId(int productId);
+
+  /**
+   * Looks the productId up in its index only, without reading the document.
+   */
+  Mono<Boolean> existsByProductId(int productId);
+
+  /**
+   * Resolves all productIds with one $in query on the productId index; missing products are skipped.
+   */
+  Flux<ProductEntity> findByProductIdIn(Collection<Integer> productIds);
+
+  /**
+   * Inserts the entity with one insert command, initializing its @Version. Nothing is read
+   * back; a duplicate productId fails with a DuplicateKeyException.
+   */
+  Mono<ProductEntity> insert(ProductEntity entity);
+
+  /**
+   * Deletes the product with one deleteOne by productId, without reading it first.
+   *
+   * @return true if a product was deleted
+   */
+  Mono<Boolean> deleteByProductId(int productId);
+
+  /**
+   * Sets the given fields, null values unset them, with one atomic findAndModify that also
+   * increments the @Version.
+   *
+   * @param expectedId if not null, only update the document with this id and expectedVersion
+   * @return the updated entity, or empty if no product matched
+   */
+  Mono<ProductEntity> update(int productId, Map<String, Object> fields, String expectedId, Integer expectedVersion);
+
+  /**
+   * Inserts all entities with one unordered bulk write. Failing documents, e.g. duplicate
+   * productIds, do not fail the call but are reported in the returned statuses.
+   *
+   * @return the status of each entity, in the order given
+   */
+  Mono<List<ProductInsertStatus>> insertAll(List<ProductEntity> entities);
+
+  /**
+   * Applies the writes in order with one ordered bulk write. The bulk write stops at the
+   * first failing operation, e.g. a duplicate productId.
+   *
+   * @return the index of the write whose operation failed, -1 if all were applied;
+   *         writes after a failed one are not applied. A write concern error alone
+   *         counts as applied: the primary ran every operation
+   */
+  Mono<Integer> writeOrdered(List<ProductWrite> writes);
+
+  /**
+   * Keyset pagination: up to limit products with a productId greater than afterProductId,
+   * in productId order. Seeks the productId index, so the cost does not depend on the page.
+   */
+  Flux<ProductEntity> findPage(int afterProductId, int limit);
+
+  /**
+   * Streams every product in productId order from one cursor, fetching cursorBatchSize
+   * documents per round trip as the subscriber requests them.
+   */
+  Flux<ProductEntity> streamAll(int cursorBatchSize);
+
+  /**
+   * Streams the productId of every stored product, reading only the productId field.
+   */
+  Flux<Integer> findAllProductIds();
+}
@@ -0,0 +1,35 @@
+package com.luca.core.product.persistence;
+
+/**
+ * The net effect of the writes buffered for one productId: optionally delete the stored
+ * product, then optionally insert a new one.
+ */
+public class ProductWrite {
+
+  private final int productId;
+
+  private final boolean deleteFirst;
+
+  private final ProductEntity insert;
+
+  public ProductWrite(int productId, boolean deleteFirst, ProductEntity insert) {
+    this.productId = productId;
+    this.deleteFirst = deleteFirst;
+    this.insert = insert;
+  }
+
+  public int getProductId() {
+    return productId;
+  }
+
+  public boolean isDeleteFirst() {
+    return deleteFirst;
+  }
+
+  /**
+   * @return the product to insert, or null if the product ends up deleted
+   */
+  public ProductEntity getInsert() {
+    return insert;
+  }
+}
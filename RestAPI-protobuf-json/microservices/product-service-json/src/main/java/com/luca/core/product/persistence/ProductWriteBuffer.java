@@ -0,0 +1,312 @@
+package com.luca.core.product.persistence;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Opt-in write-behind buffer for single product creates and deletes, enabled by
+ * "app.persistence.write-behind.enabled".
+ *
+ * Writes are acknowledged as soon as they are enqueued. Writes for the same productId are
+ * coalesced into one {@link ProductWrite} until the next flush, which runs every
+ * "flush-interval" and applies all pending writes as ordered bulk writes, so a delete is
+ * always applied before a create of the same productId that followed it. Once
+ * "max-pending" productIds are pending, writers wait for a flush before they are
+ * acknowledged. A write that fails during a flush, e.g. a create of a productId that
+ * already exists in the database, is dropped and reported to the failure listener.
+ *
+ * Reads must consult {@link #pending} first, it covers both enqueued writes and the ones
+ * being flushed.
+ *
+ * The queue lives in memory: pending writes are flushed on shutdown but lost if the
+ * process dies.
+ *
+ * Meters: "product.write-behind.queued", "product.write-behind.flush" (latency),
+ * "product.write-behind.batch-size", "product.write-behind.coalesced" and
+ * "product.write-behind.failed".
+ */
+@Component
+@ConditionalOnProperty(name = "app.persistence.write-behind.enabled", havingValue = "true")
+public class ProductWriteBuffer {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ProductWriteBuffer.class);
+
+  private final ProductPersistence persistence;
+
+  private final Duration flushInterval;
+
+  private final int maxPending;
+
+  private final Duration shutdownTimeout;
+
+  private final Object lock = new Object();
+
+  private Map<Integer, ProductWrite> pending = new LinkedHashMap<>();
+
+  private Map<Integer, ProductWrite> flushing = Map.of();
+
+  private final Sinks.Many<Sinks.Empty<Void>> flushRequests = Sinks.many().unicast().onBackpressureBuffer();
+
+  private Sinks.Empty<Void> queuedFlush;
+
+  private volatile IntConsumer failureListener = productId -> {};
+
+  private Disposable flushes;
+
+  private Disposable ticks;
+
+  private final Timer flushTimer;
+
+  private final DistributionSummary batchSizes;
+
+  private final Counter coalesced;
+
+  private final Counter failed;
+
+  @Autowired
+  public ProductWriteBuffer(
+    @Value("${app.persistence.write-behind.flush-interval:50ms}") Duration flushInterval,
+    @Value("${app.persistence.write-behind.max-pending:10000}") int maxPending,
+    @Value("${app.persistence.write-behind.shutdown-timeout:30s}") Duration shutdownTimeout,
+    ProductPersistence persistence,
+    MeterRegistry registry) {
+
+    this.flushInterval = flushInterval;
+    this.maxPending = maxPending;
+    this.shutdownTimeout = shutdownTimeout;
+    this.persistence = persistence;
+
+    Gauge.builder("product.write-behind.queued", this, ProductWriteBuffer::queued)
+      .description("ProductIds with writes waiting for the next flush")
+      .register(registry);
+    flushTimer = Timer.builder("product.write-behind.flush")
+      .description("Time to apply one flush to the database")
+      .publishPercentileHistogram()
+      .register(registry);
+    batchSizes = DistributionSummary.builder("product.write-behind.batch-size")
+      .description("ProductIds written per flush")
+      .register(registry);
+    coalesced = Counter.builder("product.write-behind.coalesced")
+      .description("Writes merged into a pending write of the same productId")
+      .register(registry);
+    failed = Counter.builder("product.write-behind.failed")
+      .description("Acknowledged writes the database rejected")
+      .register(registry);
+  }
+
+  @PostConstruct
+  public void start() {
+    // publishOn: flushes run one at a time, off the threads requesting them
+    flushes = flushRequests.asFlux()
+      .publishOn(Schedulers.boundedElastic())
+      .concatMap(done -> flushPending().doFinally(signal -> done.tryEmitEmpty()), 1)
+      .subscribe();
+    ticks = Flux.interval(flushInterval, flushInterval)
+      .subscribe(tick -> flush());
+  }
+
+  @PreDestroy
+  public void stop() {
+    ticks.dispose();
+    try {
+      flush().block(shutdownTimeout);
+    } catch (RuntimeException e) {
+      LOG.warn("Failed to flush {} pending product writes on shutdown: {}", queued(), e.toString());
+    }
+    flushes.dispose();
+  }
+
+  /**
+   * Called with the productId of every acknowledged write the database rejected.
+   */
+  public void onFailedWrite(IntConsumer listener) {
+    this.failureListener = listener;
+  }
+
+  /**
+   * @return the net pending write of the productId, null if there is none
+   */
+  public ProductWrite pending(int productId) {
+    synchronized (lock) {
+      ProductWrite write = pending.get(productId);
+      return write != null ? write : flushing.get(productId);
+    }
+  }
+
+  /**
+   * Enqueues a create on subscription.
+   *
+   * @return false, without enqueueing, if a create of the productId is already pending
+   */
+  public Mono<Boolean> create(ProductEntity entity) {
+    return Mono.defer(() -> {
+      // Reads served from the buffer need the id and version the database will store
+      if (entity.getId() == null) {
+        entity.setId(new ObjectId().toHexString());
+      }
+      if (entity.getVersion() == null) {
+        entity.setVersion(0);
+      }
+
+      ProductWrite write = new ProductWrite(entity.getProductId(), false, entity);
+      synchronized (lock) {
+        ProductWrite current = pending(entity.getProductId());
+        if (current != null && current.getInsert() != null) {
+          return Mono.just(false);
+        }
+        enqueue(write);
+      }
+      return awaitCapacity().thenReturn(true);
+    });
+  }
+
+  /**
+   * Enqueues a delete on subscription.
+   */
+  public Mono<Void> delete(int productId) {
+    return Mono.defer(() -> {
+      synchronized (lock) {
+        enqueue(new ProductWrite(productId, true, null));
+      }
+      return awaitCapacity();
+    });
+  }
+
+  /**
+   * Requests a flush; flush requests made while one is still queued share it.
+   *
+   * @return completes once the writes pending at the time of the call are applied
+   */
+  public Mono<Void> flush() {
+    synchronized (lock) {
+      if (queuedFlush == null) {
+        queuedFlush = Sinks.empty();
+        flushRequests.emitNext(queuedFlush, Sinks.EmitFailureHandler.FAIL_FAST);
+      }
+      return queuedFlush.asMono();
+    }
+  }
+
+  private Mono<Void> awaitCapacity() {
+    return queued() < maxPending ? Mono.empty() : flush();
+  }
+
+  private int queued() {
+    synchronized (lock) {
+      return pending.size();
+    }
+  }
+
+  /**
+   * Caller holds the lock.
+   */
+  private void enqueue(ProductWrite write) {
+    ProductWrite older = pending.get(write.getProductId());
+    if (older != null) {
+      coalesced.increment();
+      write = coalesce(older, write);
+    }
+    pending.put(write.getProductId(), write);
+  }
+
+  /**
+   * A delete supersedes everything before it; a create keeps an earlier delete.
+   */
+  private static ProductWrite coalesce(ProductWrite older, ProductWrite newer) {
+    if (newer.isDeleteFirst()) {
+      return newer;
+    }
+    return new ProductWrite(newer.getProductId(), older.isDeleteFirst(), newer.getInsert());
+  }
+
+  private Mono<Void> flushPending() {
+    return Mono.defer(() -> {
+      List<ProductWrite> writes;
+      synchronized (lock) {
+        queuedFlush = null;
+        if (pending.isEmpty()) {
+          return Mono.empty();
+        }
+        flushing = pending;
+        pending = new LinkedHashMap<>();
+        writes = new ArrayList<>(flushing.values());
+      }
+
+      long startedAt = System.nanoTime();
+      batchSizes.record(writes.size());
+      int[] done = {0};
+      return write(writes, done)
+        .onErrorResume(e -> {
+          // The writes before done were applied or dropped, only the rest are retried
+          List<ProductWrite> remaining = writes.subList(done[0], writes.size());
+          LOG.warn("Failed to flush {} product writes, retrying with the next flush: {}", remaining.size(), e.toString());
+          requeue(remaining);
+          return Mono.empty();
+        })
+        // Before completion reaches the flush callers, which then read past the buffer
+        .doOnTerminate(() -> {
+          synchronized (lock) {
+            flushing = Map.of();
+          }
+          flushTimer.record(System.nanoTime() - startedAt, NANOSECONDS);
+        });
+    });
+  }
+
+  /**
+   * Writes from index done[0] on. An ordered bulk write stops at the first failure, the
+   * writes after it are resubmitted; done[0] is advanced past the applied and dropped ones.
+   */
+  private Mono<Void> write(List<ProductWrite> writes, int[] done) {
+    return persistence.writeOrdered(writes.subList(done[0], writes.size()))
+      .flatMap(failedAt -> {
+        if (failedAt < 0) {
+          done[0] = writes.size();
+          return Mono.empty();
+        }
+
+        int productId = writes.get(done[0] + failedAt).getProductId();
+        LOG.warn("Dropped buffered write of productId: {}, rejected by the database", productId);
+        failed.increment();
+        failureListener.accept(productId);
+        done[0] += failedAt + 1;
+        return write(writes, done);
+      });
+  }
+
+  private void requeue(List<ProductWrite> writes) {
+    synchronized (lock) {
+      Map<Integer, ProductWrite> newer = pending;
+      pending = new LinkedHashMap<>();
+      for (ProductWrite write : writes) {
+        pending.put(write.getProductId(), write);
+      }
+      newer.values().forEach(this::enqueue);
+    }
+  }
+}
@@ -0,0 +1,181 @@
+package com.luca.core.product.persistence;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import org.bson.Document;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Component
+@ConditionalOnProperty(name = "app.persistence.mode", havingValue = "reactive", matchIfMissing = true)
+public class ReactiveProductPersistence implements ProductPersistence {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ReactiveProductPersistence.class);
+
+  private final ReactiveMongoOperations mongoTemplate;
+
+  private final ProductLayout layout;
+
+  private final CodecRegistry codecs;
+
+  @Autowired
+  public ReactiveProductPersistence(ReactiveMongoOperations mongoTemplate,
+    @Value("${app.persistence.layout:classic}") String layout) {
+    this.mongoTemplate = mongoTemplate;
+    this.layout = ProductLayout.of(layout);
+    this.codecs = ProductEntityCodec.registry(this.layout);
+  }
+
+  @Override
+  public Mono<ProductEntity> findByProductId(int productId) {
+    return mongoTemplate.execute(ProductEntity.class,
+        collection -> entities(collection).find(Filters.eq(layout.keyField(), productId)).first())
+      .next();
+  }
+
+  @Override
+  public Mono<Boolean> existsByProductId(int productId) {
+    return mongoTemplate.execute(ProductEntity.class,
+        collection -> collection.find(Filters.eq(layout.keyField(), productId))
+          .projection(layout.productIdsOnly().getFieldsObject())
+          .first())
+      .hasElements();
+  }
+
+  @Override
+  public Flux<ProductEntity> findByProductIdIn(Collection<Integer> productIds) {
+    return mongoTemplate.execute(ProductEntity.class,
+      collection -> entities(collection).find(Filters.in(layout.keyField(), productIds)));
+  }
+
+  @Override
+  public Mono<ProductEntity> insert(ProductEntity entity) {
+    initializeVersion(entity);
+    return mongoTemplate.execute(ProductEntity.class, collection -> entities(collection).insertOne(entity))
+      .then(Mono.just(entity));
+  }
+
+  @Override
+  public Mono<Boolean> deleteByProductId(int productId) {
+    return mongoTemplate.execute(ProductEntity.class,
+        collection -> collection.deleteOne(Filters.eq(layout.keyField(), productId)))
+      .next()
+      .map(result -> result.getDeletedCount() > 0);
+  }
+
+  @Override
+  public Mono<ProductEntity> update(int productId, Map<String, Object> fields, String expectedId, Integer expectedVersion) {
+    return mongoTemplate.findAndModify(ProductUpdates.query(layout, productId, expectedId, expectedVersion), ProductUpdates.update(fields),
+      FindAndModifyOptions.options().returnNew(true), ProductEntity.class);
+  }
+
+  @Override
+  public Mono<List<ProductInsertStatus>> insertAll(List<ProductEntity> entities) {
+    if (entities.isEmpty()) {
+      return Mono.just(List.of());
+    }
+
+    // Bulk inserts bypass the version initialization of save()
+    entities.forEach(ReactiveProductPersistence::initializeVersion);
+    return mongoTemplate.bulkOps(BulkMode.UNORDERED, ProductEntity.class)
+      .insert(entities)
+      .execute()
+      .map(result -> ProductInsertStatus.of(entities.size(), List.of()))
+      .onErrorResume(MongoBulkWriteException.class, e -> e.getWriteConcernError() == null
+        ? Mono.just(ProductInsertStatus.of(entities.size(), e.getWriteErrors()))
+        : Mono.error(e));
+  }
+
+  @Override
+  public Mono<Integer> writeOrdered(List<ProductWrite> writes) {
+    if (writes.isEmpty()) {
+      return Mono.just(-1);
+    }
+
+    ReactiveBulkOperations bulk = mongoTemplate.bulkOps(BulkMode.ORDERED, ProductEntity.class);
+    int[] writeOfOperation = new int[writes.size() * 2];
+    int operations = 0;
+    for (int i = 0; i < writes.size(); i++) {
+      ProductWrite write = writes.get(i);
+      if (write.isDeleteFirst()) {
+        bulk.remove(Query.query(layout.productId(write.getProductId())));
+        writeOfOperation[operations++] = i;
+      }
+      if (write.getInsert() != null) {
+        initializeVersion(write.getInsert());
+        bulk.insert(write.getInsert());
+        writeOfOperation[operations++] = i;
+      }
+    }
+
+    return bulk.execute()
+      .map(result -> -1)
+      .onErrorResume(MongoBulkWriteException.class, e -> {
+        if (!e.getWriteErrors().isEmpty()) {
+          return Mono.just(writeOfOperation[e.getWriteErrors().get(0).getIndex()]);
+        }
+        if (e.getWriteConcernError() != null) {
+          LOG.warn("Ordered bulk write of {} products applied, write concern failed: {}", writes.size(),
+            e.getWriteConcernError().getMessage());
+          return Mono.just(-1);
+        }
+        return Mono.error(e);
+      });
+  }
+
+  @Override
+  public Flux<ProductEntity> findPage(int afterProductId, int limit) {
+    return mongoTemplate.execute(ProductEntity.class,
+      collection -> entities(collection).find(Filters.gt(layout.keyField(), afterProductId))
+        .sort(Sorts.ascending(layout.keyField()))
+        .limit(limit));
+  }
+
+  @Override
+  public Flux<ProductEntity> streamAll(int cursorBatchSize) {
+    return mongoTemplate.execute(ProductEntity.class,
+      collection -> entities(collection).find()
+        .sort(Sorts.ascending(layout.keyField()))
+        .batchSize(cursorBatchSize));
+  }
+
+  @Override
+  public Flux<Integer> findAllProductIds() {
+    return mongoTemplate.find(layout.productIdsOnly(), Document.class, collectionName())
+      .map(document -> document.getInteger(layout.keyField()));
+  }
+
+  /**
+   * The collection reading and writing entities with the {@link ProductEntityCodec}.
+   */
+  private MongoCollection<ProductEntity> entities(MongoCollection<Document> collection) {
+    return collection.withCodecRegistry(codecs).withDocumentClass(ProductEntity.class);
+  }
+
+  private String collectionName() {
+    return mongoTemplate.getCollectionName(ProductEntity.class);
+  }
+
+  private static void initializeVersion(ProductEntity entity) {
+    if (entity.getVersion() == null) {
+      entity.setVersion(0);
+    }
+  }
+}
@@ -0,0 +1,12 @@
+package com.luca.core.product.persistence;
+
+import java.util.Collection;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveProductRepository extends ReactiveMongoRepository<ProductEntity, String> {
+  Mono<ProductEntity> findByProductId(int productId);
+
+  Flux<ProductEntity> findByProductIdIn(Collection<Integer> productIds);
+}
@@ -0,0 +1,164 @@
+package com.luca.core.product.web.compression;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DecoderException;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+
+/**
+ * Compresses or decompresses a body buffer by buffer through the Netty codec of a
+ * {@link ContentCoding} in an EmbeddedChannel, so streamed bodies are never held whole.
+ *
+ * Written buffers are consumed. On Netty buffers no bytes are copied: they are passed to the
+ * codec as is and its output is wrapped. Not thread-safe; the writes of one body are serial.
+ */
+final class CodingStream {
+
+  private final ContentCoding coding;
+
+  private final boolean encoding;
+
+  private final DataBufferFactory bufferFactory;
+
+  private final EmbeddedChannel channel;
+
+  private long bytesIn;
+
+  private long bytesOut;
+
+  private long nanos;
+
+  private CodingStream(ContentCoding coding, boolean encoding, ChannelHandler codec, DataBufferFactory bufferFactory) {
+    this.coding = coding;
+    this.encoding = encoding;
+    this.bufferFactory = bufferFactory;
+    this.channel = new EmbeddedChannel(codec);
+    if (bufferFactory instanceof NettyDataBufferFactory netty) {
+      channel.config().setAllocator(netty.getByteBufAllocator());
+    }
+  }
+
+  static CodingStream compressor(ContentCoding coding, int level, DataBufferFactory bufferFactory) {
+    return new CodingStream(coding, true, coding.newEncoder(level), bufferFactory);
+  }
+
+  static CodingStream decompressor(ContentCoding coding, DataBufferFactory bufferFactory) {
+    return new CodingStream(coding, false, coding.newDecoder(), bufferFactory);
+  }
+
+  /**
+   * Passes a buffer through the codec.
+   *
+   * @return the output available so far, flushed for a compressor
+   */
+  List<DataBuffer> write(DataBuffer buffer) {
+    long startedAt = System.nanoTime();
+    bytesIn += buffer.readableByteCount();
+    ByteBuf byteBuf = toByteBuf(buffer);
+    try {
+      if (encoding) {
+        channel.writeOutbound(byteBuf);
+      } else {
+        channel.writeInbound(byteBuf);
+      }
+    } catch (DecoderException e) {
+      throw new DecodingException("Invalid " + coding.token() + " body", e);
+    }
+    return drain(startedAt);
+  }
+
+  /**
+   * Ends the body, a compressor writes its trailer.
+   *
+   * @return the remaining output
+   */
+  List<DataBuffer> finish() {
+    long startedAt = System.nanoTime();
+    try {
+      channel.finish();
+    } catch (DecoderException e) {
+      throw new DecodingException("Truncated " + coding.token() + " body", e);
+    }
+    return drain(startedAt);
+  }
+
+  /**
+   * Releases the codec and any output not yet read, after {@link #finish()} or on
+   * cancellation and errors.
+   */
+  void release() {
+    channel.finishAndReleaseAll();
+  }
+
+  ContentCoding coding() {
+    return coding;
+  }
+
+  long uncompressedBytes() {
+    return encoding ? bytesIn : bytesOut;
+  }
+
+  long compressedBytes() {
+    return encoding ? bytesOut : bytesIn;
+  }
+
+  /**
+   * Time spent in the codec so far.
+   */
+  long nanos() {
+    return nanos;
+  }
+
+  private List<DataBuffer> drain(long startedAt) {
+    List<DataBuffer> buffers = new ArrayList<>(1);
+    ByteBuf byteBuf;
+    while ((byteBuf = encoding ? channel.readOutbound() : channel.readInbound()) != null) {
+      if (!byteBuf.isReadable()) {
+        byteBuf.release();
+        continue;
+      }
+      bytesOut += byteBuf.readableBytes();
+      buffers.add(toDataBuffer(byteBuf));
+    }
+    nanos += System.nanoTime() - startedAt;
+    return buffers;
+  }
+
+  private static ByteBuf toByteBuf(DataBuffer buffer) {
+    if (buffer instanceof NettyDataBuffer netty) {
+      return netty.getNativeBuffer();
+    }
+
+    try {
+      byte[] bytes = new byte[buffer.readableByteCount()];
+      buffer.read(bytes);
+      return Unpooled.wrappedBuffer(bytes);
+    } finally {
+      DataBufferUtils.release(buffer);
+    }
+  }
+
+  private DataBuffer toDataBuffer(ByteBuf byteBuf) {
+    if (bufferFactory instanceof NettyDataBufferFactory netty) {
+      return netty.wrap(byteBuf);
+    }
+
+    try {
+      DataBuffer buffer = bufferFactory.allocateBuffer(byteBuf.readableBytes());
+      byte[] bytes = new byte[byteBuf.readableBytes()];
+      byteBuf.readBytes(bytes);
+      return buffer.write(bytes);
+    } finally {
+      byteBuf.release();
+    }
+  }
+}
@@ -0,0 +1,356 @@
+package com.luca.core.product.web.compression;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.reactivestreams.Publisher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Compresses responses in the coding negotiated by Accept-Encoding and decompresses request
+ * bodies sent with a Content-Encoding, in gzip, deflate or zstd. Codings are preferred in the
+ * order of "app.compression.codings" among those of equal quality, and compressed at
+ * "app.compression.level.{coding}".
+ *
+ * Single-value responses smaller than "app.compression.min-response-size" are sent raw,
+ * larger ones are compressed whole with their Content-Length, see {@link BodyCompressor}.
+ * Streamed responses, of unknown size, are always compressed, flushed as they are written,
+ * see {@link CodingStream}. A request in an unsupported coding is answered 415 with the
+ * supported ones in Accept-Encoding.
+ *
+ * Each compressed or decompressed body is recorded, tagged with direction and coding, in
+ * "product.compression.ratio", uncompressed over compressed size, "product.compression.bytes",
+ * tagged with state, and "product.compression.time", time in the codec. The levels are the
+ * "product.compression.level" gauges.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(name = "app.compression.enabled", havingValue = "true")
+public class CompressionFilter implements WebFilter {
+
+  private static final Logger LOG = LoggerFactory.getLogger(CompressionFilter.class);
+
+  private static final String REQUEST = "request";
+
+  private static final String RESPONSE = "response";
+
+  private final MeterRegistry registry;
+
+  private final long minResponseSize;
+
+  private final List<ContentCoding> codings;
+
+  private final Map<ContentCoding, Integer> levels;
+
+  private final Map<ContentCoding, BodyCompressor> compressors = new EnumMap<>(ContentCoding.class);
+
+  private final String acceptEncoding;
+
+  @Autowired
+  public CompressionFilter(MeterRegistry registry,
+    @Value("${app.compression.min-response-size:1KB}") DataSize minResponseSize,
+    @Value("${app.compression.codings:zstd,gzip,deflate}") List<String> codings,
+    @Value("${app.compression.level.gzip:6}") int gzipLevel,
+    @Value("${app.compression.level.deflate:6}") int deflateLevel,
+    @Value("${app.compression.level.zstd:3}") int zstdLevel) {
+
+    this(registry, minResponseSize.toBytes(), codings.stream().map(CompressionFilter::coding).toList(),
+      Map.of(ContentCoding.GZIP, gzipLevel, ContentCoding.DEFLATE, deflateLevel, ContentCoding.ZSTD, zstdLevel));
+  }
+
+  /**
+   * @param codings the codings in order of preference, unavailable ones are left out
+   */
+  public CompressionFilter(MeterRegistry registry, long minResponseSize, List<ContentCoding> codings,
+    Map<ContentCoding, Integer> levels) {
+
+    this.registry = registry;
+    this.minResponseSize = minResponseSize;
+    this.codings = new ArrayList<>();
+    this.levels = new EnumMap<>(levels);
+    for (ContentCoding coding : codings) {
+      if (!coding.isAvailable()) {
+        LOG.warn("Content coding {} is not available and is not negotiated", coding.token());
+      } else if (!this.codings.contains(coding)) {
+        this.codings.add(coding);
+        int level = levels.get(coding);
+        compressors.put(coding, new BodyCompressor(coding, level));
+        Gauge.builder("product.compression.level", () -> level)
+          .description("Compression level of responses")
+          .tag("coding", coding.token())
+          .register(registry);
+      }
+    }
+    this.acceptEncoding = this.codings.stream().map(ContentCoding::token).collect(Collectors.joining(", "));
+  }
+
+  @Override
+  public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+    ServerHttpRequest request = exchange.getRequest();
+    ServerHttpResponse response = exchange.getResponse();
+
+    ContentCoding requestCoding = null;
+    String contentEncoding = request.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+    if (contentEncoding != null && !contentEncoding.trim().equalsIgnoreCase("identity")) {
+      requestCoding = ContentCoding.of(contentEncoding);
+      if (requestCoding == null || !codings.contains(requestCoding)) {
+        response.setStatusCode(HttpStatus.UNSUPPORTED_MEDIA_TYPE);
+        response.getHeaders().set(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        return response.setComplete();
+      }
+    }
+
+    response.beforeCommit(() -> {
+      HttpHeaders headers = response.getHeaders();
+      if (!headers.getVary().contains(HttpHeaders.ACCEPT_ENCODING)) {
+        headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+      }
+      return Mono.empty();
+    });
+
+    ContentCoding responseCoding = negotiate(request.getHeaders().get(HttpHeaders.ACCEPT_ENCODING));
+    if (requestCoding == null && responseCoding == null) {
+      return chain.filter(exchange);
+    }
+
+    ServerWebExchange.Builder mutated = exchange.mutate();
+    if (requestCoding != null) {
+      mutated.request(new DecompressingRequest(request, requestCoding, response.bufferFactory()));
+    }
+    if (responseCoding != null) {
+      mutated.response(new CompressingResponse(response, responseCoding));
+    }
+    return chain.filter(mutated.build());
+  }
+
+  /**
+   * The coding of the highest quality in the Accept-Encoding header, by preference among
+   * equals; "*" stands for the codings not listed.
+   *
+   * @param acceptEncoding the values of the header, may be null
+   * @return the coding, null if none is acceptable
+   */
+  public ContentCoding negotiate(List<String> acceptEncoding) {
+    if (acceptEncoding == null) {
+      return null;
+    }
+
+    Map<ContentCoding, Double> qualities = new EnumMap<>(ContentCoding.class);
+    double wildcard = 0;
+    for (String value : acceptEncoding) {
+      for (String element : value.split(",")) {
+        String[] parts = element.split(";");
+        double quality = 1;
+        for (int i = 1; i < parts.length; i++) {
+          String parameter = parts[i].trim();
+          if (parameter.length() > 2 && (parameter.startsWith("q=") || parameter.startsWith("Q="))) {
+            quality = quality(parameter.substring(2));
+          }
+        }
+
+        String name = parts[0].trim();
+        ContentCoding coding = ContentCoding.of(name);
+        if (name.equals("*")) {
+          wildcard = quality;
+        } else if (coding != null) {
+          qualities.merge(coding, quality, Math::max);
+        }
+      }
+    }
+
+    ContentCoding best = null;
+    double bestQuality = 0;
+    for (ContentCoding coding : codings) {
+      double quality = qualities.getOrDefault(coding, wildcard);
+      if (quality > bestQuality) {
+        best = coding;
+        bestQuality = quality;
+      }
+    }
+    return best;
+  }
+
+  private static double quality(String value) {
+    try {
+      return Double.parseDouble(value);
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  private static ContentCoding coding(String token) {
+    ContentCoding coding = ContentCoding.of(token);
+    if (coding == null) {
+      throw new IllegalArgumentException("Unsupported content coding in app.compression.codings: " + token);
+    }
+    return coding;
+  }
+
+  private Flux<DataBuffer> finish(CodingStream stream, String direction) {
+    return Flux.defer(() -> {
+      List<DataBuffer> rest = stream.finish();
+      record(direction, stream.coding(), stream.uncompressedBytes(), stream.compressedBytes(), stream.nanos());
+      return Flux.fromIterable(rest);
+    });
+  }
+
+  private void record(String direction, ContentCoding contentCoding, long uncompressed, long compressed, long nanos) {
+    String coding = contentCoding.token();
+    DistributionSummary.builder("product.compression.ratio")
+      .description("Uncompressed over compressed size of a body")
+      .tag("direction", direction)
+      .tag("coding", coding)
+      .register(registry)
+      .record(compressed > 0 ? (double) uncompressed / compressed : 1);
+    bytes(direction, coding, "uncompressed").increment(uncompressed);
+    bytes(direction, coding, "compressed").increment(compressed);
+    Timer.builder("product.compression.time")
+      .description("Time spent compressing or decompressing a body")
+      .tag("direction", direction)
+      .tag("coding", coding)
+      .register(registry)
+      .record(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  private Counter bytes(String direction, String coding, String state) {
+    return Counter.builder("product.compression.bytes")
+      .description("Body bytes before and after compression")
+      .baseUnit("bytes")
+      .tag("direction", direction)
+      .tag("coding", coding)
+      .tag("state", state)
+      .register(registry);
+  }
+
+  private final class CompressingResponse extends ServerHttpResponseDecorator {
+
+    private final ContentCoding coding;
+
+    CompressingResponse(ServerHttpResponse delegate, ContentCoding coding) {
+      super(delegate);
+      this.coding = coding;
+    }
+
+    @Override
+    public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+      if (!compressible()) {
+        return super.writeWith(body);
+      }
+      if (body instanceof Mono<? extends DataBuffer> value) {
+        return super.writeWith(value.map(this::compressWhole));
+      }
+
+      return compressStream(stream -> super.writeWith(Flux.from(body)
+        .concatMapIterable(stream::write)
+        .concatWith(finish(stream, RESPONSE))
+        .doOnDiscard(DataBuffer.class, DataBufferUtils::release)));
+    }
+
+    @Override
+    public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+      if (!compressible()) {
+        return super.writeAndFlushWith(body);
+      }
+
+      return compressStream(stream -> super.writeAndFlushWith(Flux.from(body)
+        .map(chunk -> Flux.from(chunk)
+          .concatMapIterable(stream::write)
+          .doOnDiscard(DataBuffer.class, DataBufferUtils::release))
+        .concatWith(Mono.just(finish(stream, RESPONSE)))));
+    }
+
+    private boolean compressible() {
+      HttpStatusCode status = getStatusCode();
+      return !getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)
+        && (status == null || (status.value() != 204 && status.value() != 304));
+    }
+
+    private DataBuffer compressWhole(DataBuffer buffer) {
+      if (buffer.readableByteCount() < minResponseSize) {
+        return buffer;
+      }
+
+      long startedAt = System.nanoTime();
+      int length = buffer.readableByteCount();
+      DataBuffer compressed = compressors.get(coding).compress(buffer, bufferFactory());
+      record(RESPONSE, coding, length, compressed.readableByteCount(), System.nanoTime() - startedAt);
+      getHeaders().set(HttpHeaders.CONTENT_ENCODING, coding.token());
+      getHeaders().setContentLength(compressed.readableByteCount());
+      return compressed;
+    }
+
+    private Mono<Void> compressStream(Function<CodingStream, Mono<Void>> write) {
+      getHeaders().set(HttpHeaders.CONTENT_ENCODING, coding.token());
+      getHeaders().remove(HttpHeaders.CONTENT_LENGTH);
+      return Mono.using(() -> CodingStream.compressor(coding, levels.get(coding), bufferFactory()),
+        write, CodingStream::release);
+    }
+  }
+
+  private final class DecompressingRequest extends ServerHttpRequestDecorator {
+
+    private final ContentCoding coding;
+
+    private final DataBufferFactory bufferFactory;
+
+    private final HttpHeaders headers;
+
+    DecompressingRequest(ServerHttpRequest delegate, ContentCoding coding, DataBufferFactory bufferFactory) {
+      super(delegate);
+      this.coding = coding;
+      this.bufferFactory = bufferFactory;
+      HttpHeaders headers = new HttpHeaders();
+      headers.putAll(delegate.getHeaders());
+      headers.remove(HttpHeaders.CONTENT_ENCODING);
+      headers.remove(HttpHeaders.CONTENT_LENGTH);
+      this.headers = HttpHeaders.readOnlyHttpHeaders(headers);
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+      return headers;
+    }
+
+    @Override
+    public Flux<DataBuffer> getBody() {
+      return Flux.using(() -> CodingStream.decompressor(coding, bufferFactory),
+        stream -> super.getBody()
+          .concatMapIterable(stream::write)
+          .concatWith(finish(stream, REQUEST))
+          .doOnDiscard(DataBuffer.class, DataBufferUtils::release),
+        CodingStream::release);
+    }
+  }
+}
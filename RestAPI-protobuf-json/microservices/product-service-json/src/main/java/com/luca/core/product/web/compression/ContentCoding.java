@@ -0,0 +1,84 @@
+package com.luca.core.product.web.compression;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.handler.codec.compression.ZlibCodecFactory;
+import io.netty.handler.codec.compression.ZlibWrapper;
+import io.netty.handler.codec.compression.Zstd;
+import io.netty.handler.codec.compression.ZstdDecoder;
+import io.netty.handler.codec.compression.ZstdEncoder;
+
+/**
+ * Content codings of request and response bodies, see {@link CompressionFilter}, backed by
+ * the Netty compression codecs of the server.
+ */
+public enum ContentCoding {
+
+  GZIP("gzip"),
+
+  /**
+   * The zlib format as in HTTP; raw deflate request bodies, sent by some clients, are read too.
+   */
+  DEFLATE("deflate"),
+
+  /**
+   * Needs zstd-jni, see {@link #isAvailable()}.
+   */
+  ZSTD("zstd");
+
+  private static final int ZSTD_BLOCK_SIZE = 64 * 1024;
+
+  private static final int ZSTD_MAX_ENCODE_SIZE = 32 * 1024 * 1024;
+
+  private final String token;
+
+  ContentCoding(String token) {
+    this.token = token;
+  }
+
+  /**
+   * The name in Accept-Encoding and Content-Encoding, and of the "coding" tag of the metrics.
+   */
+  public String token() {
+    return token;
+  }
+
+  public boolean isAvailable() {
+    return this != ZSTD || Zstd.isAvailable();
+  }
+
+  /**
+   * A new outbound handler compressing ByteBufs at the level, 1 to 9 for gzip and deflate,
+   * 1 to 22 for zstd.
+   */
+  ChannelHandler newEncoder(int level) {
+    return switch (this) {
+      case GZIP -> ZlibCodecFactory.newZlibEncoder(ZlibWrapper.GZIP, level);
+      case DEFLATE -> ZlibCodecFactory.newZlibEncoder(ZlibWrapper.ZLIB, level);
+      case ZSTD -> new ZstdEncoder(level, ZSTD_BLOCK_SIZE, ZSTD_MAX_ENCODE_SIZE);
+    };
+  }
+
+  /**
+   * A new inbound handler decompressing ByteBufs.
+   */
+  ChannelHandler newDecoder() {
+    return switch (this) {
+      case GZIP -> ZlibCodecFactory.newZlibDecoder(ZlibWrapper.GZIP);
+      case DEFLATE -> ZlibCodecFactory.newZlibDecoder(ZlibWrapper.ZLIB_OR_NONE);
+      case ZSTD -> new ZstdDecoder();
+    };
+  }
+
+  /**
+   * The coding of a token, case-insensitive, "x-gzip" included; null if unknown.
+   */
+  public static ContentCoding of(String token) {
+    String name = token.trim();
+    for (ContentCoding coding : values()) {
+      if (coding.token.equalsIgnoreCase(name)) {
+        return coding;
+      }
+    }
+    return name.equalsIgnoreCase("x-gzip") ? GZIP : null;
+  }
+}
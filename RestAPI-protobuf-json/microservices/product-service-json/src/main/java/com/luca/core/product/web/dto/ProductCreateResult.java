@@ -0,0 +1,62 @@
+package com.luca.core.product.web.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Per product outcome of a batch create, in request order.
+ */
+public class ProductCreateResult {
+
+  public enum Status {
+    CREATED,
+    DUPLICATE,
+    FAILED
+  }
+
+  public static class Item {
+    private int productId;
+    private Status status;
+
+    public Item() {}
+
+    public Item(int productId, Status status) {
+      this.productId = productId;
+      this.status = status;
+    }
+
+    public int getProductId() {
+      return productId;
+    }
+
+    public Status getStatus() {
+      return status;
+    }
+
+    public void setProductId(int productId) {
+      this.productId = productId;
+    }
+
+    public void setStatus(Status status) {
+      this.status = status;
+    }
+  }
+
+  private List<Item> items;
+
+  public ProductCreateResult() {
+    items = new ArrayList<>();
+  }
+
+  public ProductCreateResult(List<Item> items) {
+    this.items = items;
+  }
+
+  public List<Item> getItems() {
+    return items;
+  }
+
+  public void setItems(List<Item> items) {
+    this.items = items;
+  }
+}
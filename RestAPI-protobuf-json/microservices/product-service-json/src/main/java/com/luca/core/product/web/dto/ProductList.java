@@ -0,0 +1,38 @@
+package com.luca.core.product.web.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Products resolved by a multi-get, in the order requested, and the requested ids that were not found.
+ */
+public class ProductList {
+  private List<Product> products;
+  private List<Integer> missingProductIds;
+
+  public ProductList() {
+    products = new ArrayList<>();
+    missingProductIds = new ArrayList<>();
+  }
+
+  public ProductList(List<Product> products, List<Integer> missingProductIds) {
+    this.products = products;
+    this.missingProductIds = missingProductIds;
+  }
+
+  public List<Product> getProducts() {
+    return products;
+  }
+
+  public List<Integer> getMissingProductIds() {
+    return missingProductIds;
+  }
+
+  public void setProducts(List<Product> products) {
+    this.products = products;
+  }
+
+  public void setMissingProductIds(List<Integer> missingProductIds) {
+    this.missingProductIds = missingProductIds;
+  }
+}
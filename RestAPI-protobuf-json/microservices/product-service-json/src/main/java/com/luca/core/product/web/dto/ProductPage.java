@@ -0,0 +1,38 @@
+package com.luca.core.product.web.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One page of the keyset paginated listing; nextPageToken is null on the last page.
+ */
+public class ProductPage {
+  private List<Product> products;
+  private String nextPageToken;
+
+  public ProductPage() {
+    products = new ArrayList<>();
+    nextPageToken = null;
+  }
+
+  public ProductPage(List<Product> products, String nextPageToken) {
+    this.products = products;
+    this.nextPageToken = nextPageToken;
+  }
+
+  public List<Product> getProducts() {
+    return products;
+  }
+
+  public String getNextPageToken() {
+    return nextPageToken;
+  }
+
+  public void setProducts(List<Product> products) {
+    this.products = products;
+  }
+
+  public void setNextPageToken(String nextPageToken) {
+    this.nextPageToken = nextPageToken;
+  }
+}
@@ -0,0 +1,161 @@
+package com.luca.core.product.web.errors;
+
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.UNPROCESSABLE_ENTITY;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+/**
+ * Error responses of GET /product/{productId} returned as values instead of thrown, the
+ * fast error mode for miss-heavy or abusive traffic. They skip the exception handler lookup
+ * and Jackson, the body has the fields of the {@link HttpErrorInfo} that
+ * {@link GlobalControllerExceptionHandler} returns for the same errors.
+ *
+ * The body is written by hand from pre-encoded parts: the JSON around the productId is
+ * encoded once per error, the timestamp once per second with the application's ObjectMapper,
+ * and the productId is written as digits into the single array allocated per response.
+ * Timestamps therefore have second precision.
+ *
+ * Used when "app.errors.fast.enabled".
+ */
+@Component
+@ConditionalOnProperty(name = "app.errors.fast.enabled", havingValue = "true")
+public final class ErrorResponses {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ErrorResponses.class);
+
+  private final Template notFound = new Template(NOT_FOUND, "No product found for productId: ");
+
+  private final Template invalidProductId = new Template(UNPROCESSABLE_ENTITY, "Invalid productId: ");
+
+  private final ObjectMapper objectMapper;
+
+  private final Clock clock;
+
+  private volatile Timestamp timestamp = new Timestamp(Long.MIN_VALUE, null);
+
+  @Autowired
+  public ErrorResponses(ObjectMapper objectMapper) {
+    this(objectMapper, Clock.systemDefaultZone());
+  }
+
+  public ErrorResponses(ObjectMapper objectMapper, Clock clock) {
+    this.objectMapper = objectMapper;
+    this.clock = clock;
+  }
+
+  /**
+   * 404, no product with the productId.
+   */
+  public ResponseEntity<byte[]> notFound(int productId) {
+    return notFound.respond(productId);
+  }
+
+  /**
+   * 422, the productId is not positive.
+   */
+  public ResponseEntity<byte[]> invalidProductId(int productId) {
+    return invalidProductId.respond(productId);
+  }
+
+  /**
+   * The body up to the productId of the path, including the timestamp truncated to the second.
+   */
+  private byte[] head() {
+    long second = Math.floorDiv(clock.millis(), 1000);
+    Timestamp current = timestamp;
+    if (current.second != second) {
+      ZonedDateTime now = ZonedDateTime.ofInstant(Instant.ofEpochSecond(second), clock.getZone());
+      try {
+        current = new Timestamp(second,
+          ascii("{\"timestamp\":" + objectMapper.writeValueAsString(now) + ",\"path\":\"/product/"));
+      } catch (JsonProcessingException e) {
+        throw new IllegalStateException("Failed to encode timestamp: " + now, e);
+      }
+      timestamp = current;
+    }
+    return current.head;
+  }
+
+  /**
+   * Writes the decimal digits of the value ending before the offset.
+   */
+  private static void writeDigits(byte[] bytes, int end, long value) {
+    long remaining = Math.abs(value);
+    do {
+      bytes[--end] = (byte) ('0' + remaining % 10);
+      remaining /= 10;
+    } while (remaining != 0);
+    if (value < 0) {
+      bytes[--end] = '-';
+    }
+  }
+
+  private static int digits(long value) {
+    int digits = value < 0 ? 2 : 1;
+    for (long remaining = Math.abs(value); remaining >= 10; remaining /= 10) {
+      digits++;
+    }
+    return digits;
+  }
+
+  private static byte[] ascii(String value) {
+    return value.getBytes(StandardCharsets.US_ASCII);
+  }
+
+  private record Timestamp(long second, byte[] head) {
+  }
+
+  /**
+   * An error about a productId: path and message end with it.
+   */
+  private final class Template {
+
+    private final HttpStatus status;
+
+    private final String message;
+
+    private final byte[] middle;
+
+    private final byte[] tail;
+
+    Template(HttpStatus status, String message) {
+      this.status = status;
+      this.message = message;
+      this.middle = ascii("\",\"message\":\"" + message);
+      this.tail = ascii("\",\"status\":" + status.value() + ",\"error\":\"" + status.getReasonPhrase() + "\"}");
+    }
+
+    ResponseEntity<byte[]> respond(int productId) {
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Returning HTTP status: {} for path: /product/{}, message: {}{}", status, productId, message, productId);
+      }
+
+      byte[] head = head();
+      int digits = digits(productId);
+      byte[] body = new byte[head.length + digits + middle.length + digits + tail.length];
+
+      System.arraycopy(head, 0, body, 0, head.length);
+      int offset = head.length + digits;
+      writeDigits(body, offset, productId);
+      System.arraycopy(middle, 0, body, offset, middle.length);
+      offset += middle.length + digits;
+      writeDigits(body, offset, productId);
+      System.arraycopy(tail, 0, body, offset, tail.length);
+
+      return ResponseEntity.status(status).body(body);
+    }
+  }
+}
@@ -2,6 +2,7 @@ package com.luca.core.product.web.errors;
 
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.PRECONDITION_FAILED;
 import static org.springframework.http.HttpStatus.UNPROCESSABLE_ENTITY;
 
 import org.slf4j.Logger;
@@ -15,6 +16,7 @@ import org.springframework.web.bind.annotation.RestControllerAdvice;
 import com.luca.core.product.web.exceptions.BadRequestException;
 import com.luca.core.product.web.exceptions.InvalidInputException;
 import com.luca.core.product.web.exceptions.NotFoundException;
+import com.luca.core.product.web.exceptions.PreconditionFailedException;
 
 @RestControllerAdvice
 class GlobalControllerExceptionHandler {
@@ -37,6 +39,14 @@ class GlobalControllerExceptionHandler {
     return createHttpErrorInfo(NOT_FOUND, request, ex);
   }
 
+  @ResponseStatus(PRECONDITION_FAILED)
+  @ExceptionHandler(PreconditionFailedException.class)
+  public @ResponseBody HttpErrorInfo handlePreconditionFailedExceptions(
+    ServerHttpRequest request, PreconditionFailedException ex) {
+
+    return createHttpErrorInfo(PRECONDITION_FAILED, request, ex);
+  }
+
   @ResponseStatus(UNPROCESSABLE_ENTITY)
   @ExceptionHandler(InvalidInputException.class)
   public @ResponseBody HttpErrorInfo handleInvalidInputException(
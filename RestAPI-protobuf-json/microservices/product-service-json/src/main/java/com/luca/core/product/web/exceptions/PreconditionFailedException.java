@@ -0,0 +1,23 @@
+package com.luca.core.product.web.exceptions;
+
+public class PreconditionFailedException extends RuntimeException {
+
+  @Override
+  public Throwable fillInStackTrace() {
+    return this;
+  }
+
+  public PreconditionFailedException() {}
+
+  public PreconditionFailedException(String message) {
+    super(message);
+  }
+
+  public PreconditionFailedException(String message, Throwable cause) {
+    super(message, cause);
+  }
+
+  public PreconditionFailedException(Throwable cause) {
+    super(cause);
+  }
+}
@@ -0,0 +1,58 @@
+package com.luca.core.product.web.filters;
+
+import com.luca.core.product.persistence.MongoRoundTrips;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * Counts the MongoDB commands each request sends, see {@link MongoRoundTrips}.
+ *
+ * The count so far is returned in the "X-Mongo-Round-Trips" response header, written when
+ * the response is committed; commands of a streamed body that follow are only included in
+ * the "product.mongo.round-trips" summary, tagged with method and uri pattern.
+ */
+@Component
+@ConditionalOnProperty(name = "app.persistence.round-trips.enabled", havingValue = "true", matchIfMissing = true)
+public class MongoRoundTripFilter implements WebFilter {
+
+  public static final String HEADER = "X-Mongo-Round-Trips";
+
+  private final MeterRegistry registry;
+
+  @Autowired
+  public MongoRoundTripFilter(MeterRegistry registry) {
+    this.registry = registry;
+  }
+
+  @Override
+  public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+    AtomicInteger roundTrips = new AtomicInteger();
+    exchange.getResponse().beforeCommit(() -> {
+      exchange.getResponse().getHeaders().set(HEADER, Integer.toString(roundTrips.get()));
+      return Mono.empty();
+    });
+
+    return chain.filter(exchange)
+      .contextWrite(context -> context.put(MongoRoundTrips.CONTEXT_KEY, roundTrips))
+      .doFinally(signal -> record(exchange, roundTrips.get()));
+  }
+
+  private void record(ServerWebExchange exchange, int roundTrips) {
+    Object pattern = exchange.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+    DistributionSummary.builder("product.mongo.round-trips")
+      .description("MongoDB commands sent per request")
+      .tag("method", exchange.getRequest().getMethod().name())
+      .tag("uri", pattern != null ? pattern.toString() : "UNKNOWN")
+      .register(registry)
+      .record(roundTrips);
+  }
+}
@@ -1,7 +1,17 @@
 package com.luca.core.product.web.services;
 
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.luca.core.product.web.dto.Product;
+import com.luca.core.product.web.dto.ProductCreateResult;
+import com.luca.core.product.web.dto.ProductList;
+import com.luca.core.product.web.dto.ProductPage;
+import java.util.List;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 public interface ProductService {
 
@@ -19,18 +29,108 @@ public interface ProductService {
     value    = "/product",
     consumes = "application/json",
     produces = "application/json")
-  Product createProduct(@RequestBody Product body);
+  Mono<Product> createProduct(@RequestBody Product body);
+
+  /**
+   * Sample usage, see below.
+   *
+   * curl -X POST $HOST:$PORT/products \
+   *   -H "Content-Type: application/json" \
+   *   --data '[{"productId":1,"name":"n","weight":1},{"productId":2,"name":"n","weight":2}]'
+   *
+   * Inserts all products with one unordered bulk write; duplicates do not fail the batch.
+   *
+   * @param body A JSON array of the new products
+   * @return The status of each product, in request order
+   */
+  @PostMapping(
+    value    = "/products",
+    consumes = "application/json",
+    produces = "application/json")
+  Mono<ProductCreateResult> createProducts(@RequestBody List<Product> body);
 
   /**
    * Sample usage: "curl $HOST:$PORT/product/1".
    *
+   * Responses carry an ETag; repeating it in If-None-Match answers 304 Not Modified
+   * without a body while the product is unchanged.
+   *
    * @param productId Id of the product
-   * @return the product, if found, else null
+   * @param ifNoneMatch ETags the client already holds, optional
+   * @return A JSON representation of the product, if found, else null.
+   *         Returned pre-encoded, so cached products are written without re-serialization.
    */
   @GetMapping(
     value = "/product/{productId}",
     produces = "application/json")
-  Product getProduct(@PathVariable int productId);
+  Mono<ResponseEntity<byte[]>> getProduct(
+    @PathVariable int productId,
+    @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch);
+
+  /**
+   * Sample usage: "curl $HOST:$PORT/products?ids=1,2,3".
+   *
+   * @param ids Ids of the products, resolved with a single query
+   * @return A JSON ProductList of the products found, in the order requested,
+   *         with the ids that were not found in missingProductIds
+   */
+  @GetMapping(
+    value = "/products",
+    produces = "application/json")
+  Mono<ProductList> getProducts(@RequestParam List<Integer> ids);
+
+  /**
+   * Sample usage: "curl $HOST:$PORT/products/page?size=100&token=AQAAAGQ".
+   *
+   * Pages in productId order by seeking past the last productId of the previous page,
+   * so every page costs the same.
+   *
+   * @param token nextPageToken of the previous page, omitted for the first page
+   * @param size Number of products per page
+   * @return A JSON ProductPage, its nextPageToken is null on the last page
+   */
+  @GetMapping(
+    value = "/products/page",
+    produces = "application/json")
+  Mono<ProductPage> getProductPage(
+    @RequestParam(required = false) String token,
+    @RequestParam(defaultValue = "100") int size);
+
+  /**
+   * Sample usage: "curl $HOST:$PORT/products/stream > products.ndjson".
+   *
+   * Streams the whole catalog in productId order straight from a Mongo cursor, fetching
+   * "app.stream.cursor-batch-size" documents at a time as the client reads.
+   *
+   * @return Newline delimited JSON, one product per line
+   */
+  @GetMapping(
+    value = "/products/stream",
+    produces = "application/x-ndjson")
+  Flux<DataBuffer> streamProducts();
+
+  /**
+   * Sample usage, see below.
+   *
+   * curl -X PATCH $HOST:$PORT/product/1 \
+   *   -H "Content-Type: application/merge-patch+json" \
+   *   -H 'If-Match: W/"<ETag of GET /product/1>"' \
+   *   -d '{"weight":2}'
+   *
+   * Applies a JSON merge patch (RFC 7386) with one atomic update.
+   *
+   * @param body A JSON merge patch, may set "name" and "weight"; a null name unsets it
+   * @param ifMatch ETag of the version the patch is based on, optional; 412 if the product changed since
+   * @return A JSON representation of the updated product, with its new ETag
+   */
+  @PatchMapping(
+    value    = "/product/{productId}",
+    consumes = "application/merge-patch+json",
+    produces = "application/json")
+  Mono<ResponseEntity<Product>> patchProduct(
+    @PathVariable int productId,
+    @RequestBody ObjectNode body,
+    @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch);
 
   /**
    * Sample usage: "curl -X DELETE $HOST:$PORT/product/1".
@@ -38,5 +138,5 @@ public interface ProductService {
    * @param productId Id of the product
    */
   @DeleteMapping(value = "/product/{productId}")
-  void deleteProduct(@PathVariable int productId);
+  Mono<Void> deleteProduct(@PathVariable int productId);
 }
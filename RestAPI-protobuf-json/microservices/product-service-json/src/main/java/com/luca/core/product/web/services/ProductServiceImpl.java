@@ -1,16 +1,52 @@
 package com.luca.core.product.web.services;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.luca.core.product.cache.ProductCache;
+import com.luca.core.product.cache.ProductLookupFilter;
+import com.luca.core.product.cache.ProductPayload;
+import com.luca.core.product.cache.ProductPayloadCache;
 import com.luca.core.product.mapper.ProductMapper;
 import com.luca.core.product.persistence.ProductEntity;
+import com.luca.core.product.persistence.ProductInsertStatus;
+import com.luca.core.product.persistence.ProductWrite;
+import com.luca.core.product.persistence.ProductWriteBuffer;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import com.luca.core.product.web.dto.Product;
+import com.luca.core.product.web.dto.ProductCreateResult;
+import com.luca.core.product.web.dto.ProductList;
+import com.luca.core.product.web.dto.ProductPage;
 import com.luca.core.product.web.exceptions.InvalidInputException;
 import com.luca.core.product.web.exceptions.NotFoundException;
-import com.luca.core.product.persistence.ProductRepository;
+import com.luca.core.product.web.exceptions.PreconditionFailedException;
+import com.luca.core.product.persistence.ProductPersistence;
+import com.luca.core.product.web.errors.ErrorResponses;
 import com.luca.core.product.web.errors.ServiceUtil;
 
 @RestController
@@ -18,54 +54,424 @@ public class ProductServiceImpl implements ProductService {
 
   private static final Logger LOG = LoggerFactory.getLogger(ProductServiceImpl.class);
 
+  private static final SerializedString NEW_LINE = new SerializedString("\n");
+
   private final ServiceUtil serviceUtil;
 
-  private final ProductRepository repository;
+  private final ProductPersistence persistence;
+
+  private final ProductCache cache;
+
+  private final ProductPayloadCache payloadCache;
+
+  private final ProductLookupFilter lookupFilter;
+
+  private final ProductWriteBuffer writeBuffer;
 
   private final ProductMapper mapper;
 
+  private final ObjectMapper objectMapper;
+
+  private final ErrorResponses errorResponses;
+
+  private final int maxBatchProducts;
+
+  private final int maxBatchIds;
+
+  private final int streamCursorBatchSize;
+
+  private final int maxPageSize;
+
   @Autowired
-  public ProductServiceImpl(ProductRepository repository, ProductMapper mapper, ServiceUtil serviceUtil) {
-    this.repository = repository;
+  public ProductServiceImpl(ProductPersistence persistence, ProductCache cache,
+    ObjectProvider<ProductPayloadCache> payloadCache, ProductLookupFilter lookupFilter,
+    ObjectProvider<ProductWriteBuffer> writeBuffer, ProductMapper mapper, ObjectMapper objectMapper,
+    ObjectProvider<ErrorResponses> errorResponses, ServiceUtil serviceUtil, @Value("${app.batch.max-products:10000}") int maxBatchProducts,
+    @Value("${app.batch.max-ids:1000}") int maxBatchIds,
+    @Value("${app.stream.cursor-batch-size:500}") int streamCursorBatchSize,
+    @Value("${app.page.max-size:1000}") int maxPageSize) {
+    this.persistence = persistence;
+    this.cache = cache;
+    this.payloadCache = payloadCache.getIfAvailable();
+    this.lookupFilter = lookupFilter;
+    this.writeBuffer = writeBuffer.getIfAvailable();
+    if (this.writeBuffer != null) {
+      this.writeBuffer.onFailedWrite(this::evict);
+    }
     this.mapper = mapper;
+    this.objectMapper = objectMapper;
+    this.errorResponses = errorResponses.getIfAvailable();
     this.serviceUtil = serviceUtil;
+    this.maxBatchProducts = maxBatchProducts;
+    this.maxBatchIds = maxBatchIds;
+    this.streamCursorBatchSize = streamCursorBatchSize;
+    this.maxPageSize = maxPageSize;
   }
 
   @Override
-  public Product createProduct(Product body) {
-    try {
-      ProductEntity entity = mapper.apiToEntity(body);
-      ProductEntity newEntity = repository.save(entity);
+  public Mono<Product> createProduct(Product body) {
+    ProductEntity entity = mapper.apiToEntity(body);
+
+    Mono<ProductEntity> saved = writeBuffer == null
+      ? persistence.insert(entity)
+      : exists(entity.getProductId())
+        .flatMap(exists -> exists ? Mono.just(false) : writeBuffer.create(entity))
+        .flatMap(created -> created
+          ? Mono.just(entity)
+          : Mono.error(new DuplicateKeyException("Existing productId: " + entity.getProductId())));
+
+    return saved
+      .onErrorMap(DuplicateKeyException.class,
+        ex -> new InvalidInputException("Duplicate key, Product Id: " + body.getProductId()))
+      .doOnNext(e -> {
+        lookupFilter.recordCreated(e.getProductId());
+        evict(e.getProductId());
+        LOG.debug("createProduct: entity created for productId: {}", body.getProductId());
+      })
+      .map(mapper::entityToApi);
+  }
 
-      LOG.debug("createProduct: entity created for productId: {}", body.getProductId());
-      return mapper.entityToApi(newEntity);
+  @Override
+  public Mono<ProductCreateResult> createProducts(List<Product> body) {
+    if (body.size() > maxBatchProducts) {
+      return Mono.error(new InvalidInputException("Too many products in batch: " + body.size()
+        + ", at most " + maxBatchProducts + " allowed"));
+    }
 
-    } catch (DuplicateKeyException dke) {
-      throw new InvalidInputException("Duplicate key, Product Id: " + body.getProductId());
+    List<ProductEntity> entities = new ArrayList<>(body.size());
+    for (Product product : body) {
+      entities.add(mapper.apiToEntity(product));
     }
+
+    return flushPendingWrites()
+      .then(persistence.insertAll(entities))
+      .map(statuses -> {
+        List<ProductCreateResult.Item> items = new ArrayList<>(statuses.size());
+        for (int i = 0; i < statuses.size(); i++) {
+          int productId = entities.get(i).getProductId();
+          ProductInsertStatus status = statuses.get(i);
+          if (status == ProductInsertStatus.CREATED) {
+            lookupFilter.recordCreated(productId);
+            evict(productId);
+          }
+          items.add(new ProductCreateResult.Item(productId, ProductCreateResult.Status.valueOf(status.name())));
+        }
+
+        LOG.debug("createProducts: inserted batch of {} products", statuses.size());
+
+        return new ProductCreateResult(items);
+      });
   }
 
   @Override
-  public Product getProduct(int productId) {
+  public Mono<ResponseEntity<byte[]>> getProduct(int productId, String ifNoneMatch) {
 
     if (productId < 1) {
-      throw new InvalidInputException("Invalid productId: " + productId);
+      return errorResponses != null
+        ? Mono.just(errorResponses.invalidProductId(productId))
+        : Mono.error(new InvalidInputException("Invalid productId: " + productId));
+    }
+
+    if (payloadCache != null) {
+      ProductPayload payload = payloadCache.get(productId);
+      if (payload != null) {
+        return Mono.just(respond(payload.getETag(), payload.getBody(), ifNoneMatch));
+      }
+    }
+
+    if (lookupFilter.isKnownMissing(productId)) {
+      return productNotFound(productId);
+    }
+
+    long stamp = payloadCache != null ? payloadCache.stamp() : 0;
+    long lookupStamp = lookupFilter.stamp();
+    return cache.get(productId, this::findByProductId)
+      .map(entity -> {
+        LOG.debug("getProduct: found productId: {}", productId);
+
+        String eTag = ETags.of(entity);
+        if (ETags.matches(ifNoneMatch, eTag)) {
+          return respond(eTag, null, ifNoneMatch);
+        }
+
+        Product response = mapper.entityToApi(entity);
+        response.setServiceAddress(serviceUtil.getServiceAddress());
+        byte[] body = toJson(response);
+
+        if (payloadCache != null) {
+          payloadCache.put(productId, new ProductPayload(eTag, body), stamp);
+        }
+
+        return respond(eTag, body, ifNoneMatch);
+      })
+      .switchIfEmpty(Mono.defer(() -> {
+        lookupFilter.recordMissing(productId, lookupStamp);
+        return productNotFound(productId);
+      }));
+  }
+
+  @Override
+  public Mono<ProductList> getProducts(List<Integer> ids) {
+    Set<Integer> productIds = new LinkedHashSet<>(ids);
+    if (productIds.size() > maxBatchIds) {
+      return Mono.error(new InvalidInputException("Too many productIds: " + productIds.size()
+        + ", at most " + maxBatchIds + " allowed"));
+    }
+
+    List<Integer> lookups = new ArrayList<>(productIds.size());
+    Map<Integer, ProductWrite> buffered = new HashMap<>();
+    for (int productId : productIds) {
+      if (productId < 1) {
+        return Mono.error(new InvalidInputException("Invalid productId: " + productId));
+      }
+      ProductWrite write = writeBuffer != null ? writeBuffer.pending(productId) : null;
+      if (write != null) {
+        buffered.put(productId, write);
+      } else if (!lookupFilter.isKnownMissing(productId)) {
+        lookups.add(productId);
+      }
+    }
+
+    long lookupStamp = lookupFilter.stamp();
+    Mono<Map<Integer, ProductEntity>> stored = lookups.isEmpty()
+      ? Mono.just(Map.of())
+      : persistence.findByProductIdIn(lookups).collectMap(ProductEntity::getProductId);
+    return stored
+      .map(found -> {
+        String serviceAddress = serviceUtil.getServiceAddress();
+        ProductList result = new ProductList();
+        for (int productId : productIds) {
+          ProductWrite write = buffered.get(productId);
+          ProductEntity entity = write != null ? write.getInsert() : found.get(productId);
+          if (entity != null) {
+            Product product = mapper.entityToApi(entity);
+            product.setServiceAddress(serviceAddress);
+            result.getProducts().add(product);
+          } else {
+            result.getMissingProductIds().add(productId);
+          }
+        }
+        for (int productId : lookups) {
+          if (!found.containsKey(productId)) {
+            lookupFilter.recordMissing(productId, lookupStamp);
+          }
+        }
+
+        LOG.debug("getProducts: found {} of {} products", found.size(), productIds.size());
+
+        return result;
+      });
+  }
+
+  @Override
+  public Mono<ProductPage> getProductPage(String token, int size) {
+    if (size < 1 || size > maxPageSize) {
+      return Mono.error(new InvalidInputException("Invalid page size: " + size + ", must be between 1 and " + maxPageSize));
     }
 
-    ProductEntity entity = repository.findByProductId(productId)
-      .orElseThrow(() -> new NotFoundException("No product found for productId: " + productId));
+    // One extra product tells whether there is a next page
+    return Mono.fromCallable(() -> PageTokens.lastProductId(token))
+      .flatMap(lastProductId -> persistence.findPage(lastProductId, size + 1).collectList())
+      .map(entities -> {
+        String serviceAddress = serviceUtil.getServiceAddress();
+        ProductPage page = new ProductPage();
+        for (ProductEntity entity : entities.subList(0, Math.min(size, entities.size()))) {
+          Product product = mapper.entityToApi(entity);
+          product.setServiceAddress(serviceAddress);
+          page.getProducts().add(product);
+        }
+        if (entities.size() > size) {
+          page.setNextPageToken(PageTokens.after(entities.get(size - 1).getProductId()));
+        }
+        return page;
+      });
+  }
+
+  /**
+   * Encodes each cursor batch into one buffer with a single streaming JsonGenerator, so at
+   * most one batch of products is held in memory.
+   */
+  @Override
+  public Flux<DataBuffer> streamProducts() {
+    String serviceAddress = serviceUtil.getServiceAddress();
+    return persistence.streamAll(streamCursorBatchSize)
+      .buffer(streamCursorBatchSize)
+      .map(entities -> {
+        DataBuffer buffer = DefaultDataBufferFactory.sharedInstance.allocateBuffer(entities.size() * 64);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(buffer.asOutputStream())) {
+          generator.setRootValueSeparator(NEW_LINE);
+          for (ProductEntity entity : entities) {
+            Product product = mapper.entityToApi(entity);
+            product.setServiceAddress(serviceAddress);
+            objectMapper.writeValue(generator, product);
+          }
+          generator.writeRaw('\n');
+        } catch (IOException e) {
+          DataBufferUtils.release(buffer);
+          throw new UncheckedIOException("Failed to encode products", e);
+        }
+        return buffer;
+      })
+      .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+  }
 
-    Product response = mapper.entityToApi(entity);
-    response.setServiceAddress(serviceUtil.getServiceAddress());
+  @Override
+  public Mono<ResponseEntity<Product>> patchProduct(int productId, ObjectNode body, String ifMatch) {
+    if (body.isEmpty()) {
+      return Mono.error(new InvalidInputException("Empty merge patch"));
+    }
 
-    LOG.debug("getProduct: found productId: {}", response.getProductId());
+    Map<String, Object> fields = new LinkedHashMap<>();
+    for (Map.Entry<String, JsonNode> field : (Iterable<Map.Entry<String, JsonNode>>) body::fields) {
+      JsonNode value = field.getValue();
+      switch (field.getKey()) {
+        case "name" -> {
+          if (!value.isNull() && !value.isTextual()) {
+            return Mono.error(new InvalidInputException("Invalid name: " + value));
+          }
+          fields.put("name", value.isNull() ? null : value.textValue());
+        }
+        case "weight" -> {
+          if (!value.canConvertToInt() || !value.isIntegralNumber()) {
+            return Mono.error(new InvalidInputException("Invalid weight: " + value));
+          }
+          fields.put("weight", value.intValue());
+        }
+        case "productId" -> {
+          if (!value.isIntegralNumber() || value.longValue() != productId) {
+            return Mono.error(new InvalidInputException("productId can not be patched"));
+          }
+        }
+        default -> {
+          return Mono.error(new InvalidInputException("Field can not be patched: " + field.getKey()));
+        }
+      }
+    }
+    if (fields.isEmpty()) {
+      return Mono.error(new InvalidInputException("Empty merge patch"));
+    }
 
-    return response;
+    return update(productId, fields, ifMatch)
+      .map(entity -> {
+        Product product = mapper.entityToApi(entity);
+        product.setServiceAddress(serviceUtil.getServiceAddress());
+        return ResponseEntity.ok().eTag(ETags.of(entity)).body(product);
+      });
   }
 
   @Override
-  public void deleteProduct(int productId) {
+  public Mono<Void> deleteProduct(int productId) {
     LOG.debug("deleteProduct: tries to delete an entity with productId: {}", productId);
-    repository.findByProductId(productId).ifPresent(e -> repository.delete(e));
+    if (writeBuffer != null) {
+      return writeBuffer.delete(productId)
+        .doFinally(signal -> evict(productId));
+    }
+    return persistence.deleteByProductId(productId)
+      .doOnNext(deleted -> LOG.debug("deleteProduct: productId: {} deleted: {}", productId, deleted))
+      .doFinally(signal -> evict(productId))
+      .then();
+  }
+
+  /**
+   * Answers 304 without a body if the client already holds the current tag, the body may
+   * then be null.
+   */
+  private ResponseEntity<byte[]> respond(String eTag, byte[] body, String ifNoneMatch) {
+    if (ETags.matches(ifNoneMatch, eTag)) {
+      return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+    }
+    return ResponseEntity.ok().eTag(eTag).body(body);
+  }
+
+  /**
+   * Applies a patch with one findAndModify. With an If-Match tag the update only matches the
+   * tagged document and version; if that finds nothing, a second read tells a stale tag (412)
+   * from a missing product (404). Only the first tag of an If-Match list is considered.
+   */
+  private Mono<ProductEntity> update(int productId, Map<String, Object> fields, String ifMatch) {
+    if (productId < 1) {
+      return Mono.error(new InvalidInputException("Invalid productId: " + productId));
+    }
+
+    ETags.Tag expected = null;
+    if (ifMatch != null && !ifMatch.trim().equals("*")) {
+      expected = ETags.parse(ifMatch.split(",")[0]);
+      if (expected == null) {
+        return Mono.error(new PreconditionFailedException("If-Match does not match productId: " + productId));
+      }
+    }
+
+    Mono<ProductEntity> updated = expected == null
+      ? persistence.update(productId, fields, null, null)
+      : persistence.update(productId, fields, expected.id, expected.version);
+    return flushPendingWrites()
+      .then(updated)
+      .switchIfEmpty(Mono.defer(() -> findByProductId(productId)
+        .flatMap(current -> Mono.<ProductEntity>error(
+          new PreconditionFailedException("If-Match does not match productId: " + productId)))
+        .switchIfEmpty(Mono.error(() -> notFound(productId)))))
+      .doOnNext(entity -> {
+        evict(productId);
+        LOG.debug("patchProduct: updated productId: {} to version: {}", productId, entity.getVersion());
+      });
+  }
+
+  /**
+   * Whether a create through the write-behind buffer would duplicate a product: a pending
+   * write of the productId decides, the productId index otherwise. The buffer itself rejects
+   * a second pending create, so only creates racing the flush of another get past both.
+   */
+  private Mono<Boolean> exists(int productId) {
+    return Mono.defer(() -> {
+      ProductWrite write = writeBuffer.pending(productId);
+      return write != null ? Mono.just(write.getInsert() != null) : persistence.existsByProductId(productId);
+    });
+  }
+
+  /**
+   * Pending writes of the write-behind buffer take precedence over the database.
+   */
+  private Mono<ProductEntity> findByProductId(int productId) {
+    if (writeBuffer != null) {
+      ProductWrite write = writeBuffer.pending(productId);
+      if (write != null) {
+        return Mono.justOrEmpty(write.getInsert());
+      }
+    }
+    return persistence.findByProductId(productId);
+  }
+
+  /**
+   * Bulk inserts bypass the write-behind buffer, pending writes are applied first to keep
+   * the order of writes to the same productId.
+   */
+  private Mono<Void> flushPendingWrites() {
+    return writeBuffer != null ? writeBuffer.flush() : Mono.empty();
+  }
+
+  /**
+   * The 404 of GET /product/{productId}, returned as a value in the fast error mode.
+   */
+  private Mono<ResponseEntity<byte[]>> productNotFound(int productId) {
+    return errorResponses != null ? Mono.just(errorResponses.notFound(productId)) : Mono.error(notFound(productId));
+  }
+
+  private NotFoundException notFound(int productId) {
+    return new NotFoundException("No product found for productId: " + productId);
+  }
+
+  private void evict(int productId) {
+    cache.invalidate(productId);
+    if (payloadCache != null) {
+      payloadCache.invalidate(productId);
+    }
+  }
+
+  private byte[] toJson(Product product) {
+    try {
+      return objectMapper.writeValueAsBytes(product);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Failed to encode productId: " + product.getProductId(), e);
+    }
   }
 }
@@ -0,0 +1,102 @@
+package com.luca.core.product;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.luca.core.product.web.errors.ErrorResponses;
+import com.luca.core.product.web.errors.HttpErrorInfo;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+class ErrorResponsesTests {
+
+  private static final ZoneId ZONE = ZoneId.of("Europe/Rome");
+
+  private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+    .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build();
+
+  @Test
+  void notFoundMatchesTheExceptionHandler() throws IOException {
+    Instant now = Instant.parse("2024-03-01T10:15:30.123Z");
+    ErrorResponses errorResponses = new ErrorResponses(objectMapper, Clock.fixed(now, ZONE));
+
+    for (int productId : new int[] {1, 9, 10, 13, 999_999, Integer.MAX_VALUE}) {
+      ResponseEntity<byte[]> response = errorResponses.notFound(productId);
+
+      assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+      assertEquals(expected(HttpStatus.NOT_FOUND, productId, "No product found for productId: ", Instant.parse("2024-03-01T10:15:30Z")),
+        objectMapper.readTree(response.getBody()));
+    }
+  }
+
+  @Test
+  void invalidProductIdMatchesTheExceptionHandler() throws IOException {
+    ErrorResponses errorResponses = new ErrorResponses(objectMapper, Clock.fixed(Instant.EPOCH, ZONE));
+
+    for (int productId : new int[] {0, -1, -42, Integer.MIN_VALUE}) {
+      ResponseEntity<byte[]> response = errorResponses.invalidProductId(productId);
+
+      assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, response.getStatusCode());
+      assertEquals(expected(HttpStatus.UNPROCESSABLE_ENTITY, productId, "Invalid productId: ", Instant.EPOCH),
+        objectMapper.readTree(response.getBody()));
+    }
+  }
+
+  @Test
+  void timestampAdvancesBySecond() throws IOException {
+    MutableClock clock = new MutableClock(Instant.parse("2024-03-01T10:15:30.100Z"));
+    ErrorResponses errorResponses = new ErrorResponses(objectMapper, clock);
+
+    String first = timestamp(errorResponses.notFound(1));
+    clock.now = Instant.parse("2024-03-01T10:15:30.900Z");
+    assertEquals(first, timestamp(errorResponses.notFound(1)));
+    clock.now = Instant.parse("2024-03-01T10:15:31.000Z");
+    assertEquals(objectMapper.valueToTree(ZonedDateTime.ofInstant(clock.now, ZONE)).asText(), timestamp(errorResponses.notFound(1)));
+  }
+
+  /**
+   * The body of the exception handler at the given second.
+   */
+  private ObjectNode expected(HttpStatus status, int productId, String message, Instant second) {
+    ObjectNode expected = objectMapper.valueToTree(new HttpErrorInfo(status, "/product/" + productId, message + productId));
+    expected.set("timestamp", objectMapper.valueToTree(ZonedDateTime.ofInstant(second, ZONE)));
+    return expected;
+  }
+
+  private String timestamp(ResponseEntity<byte[]> response) throws IOException {
+    return objectMapper.readTree(response.getBody()).get("timestamp").asText();
+  }
+
+  private static final class MutableClock extends Clock {
+
+    private Instant now;
+
+    MutableClock(Instant now) {
+      this.now = now;
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZONE;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Instant instant() {
+      return now;
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package com.luca.core.product;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.luca.core.product.persistence.KeyedLayoutConfiguration;
+import com.luca.core.product.persistence.ProductEntity;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+class KeyedLayoutTests {
+
+  private MappingMongoConverter converter;
+
+  @BeforeEach
+  void setupConverter() {
+    MongoCustomConversions conversions = new KeyedLayoutConfiguration().mongoCustomConversions();
+    MongoMappingContext mappingContext = new MongoMappingContext();
+    mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+    converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+    converter.setCustomConversions(conversions);
+    converter.afterPropertiesSet();
+  }
+
+  @Test
+  void productIdIsTheDocumentId() {
+
+    ProductEntity entity = new ProductEntity(7, "n", 3);
+    entity.setVersion(2);
+
+    Document document = new Document();
+    converter.write(entity, document);
+
+    assertEquals(7, document.get("_id"));
+    assertFalse(document.containsKey("productId"));
+    assertNotNull(entity.getId());
+    assertEquals(new ObjectId(entity.getId()), document.get("oid"));
+
+    ProductEntity read = converter.read(ProductEntity.class, document);
+    assertEquals(entity.getId(), read.getId());
+    assertEquals(2, read.getVersion());
+    assertEquals(7, read.getProductId());
+    assertEquals("n", read.getName());
+    assertEquals(3, read.getWeight());
+  }
+}
@@ -0,0 +1,69 @@
+package com.luca.core.product;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.luca.core.product.cache.OffHeapProductPayloadCache;
+import com.luca.core.product.cache.ProductPayload;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+class OffHeapProductPayloadCacheTests {
+
+  // Room for exactly 8 slots of 16 bytes
+  private final OffHeapProductPayloadCache cache = new OffHeapProductPayloadCache(
+    DataSize.ofBytes(128), DataSize.ofBytes(64), DataSize.ofBytes(16), Duration.ofMinutes(1), new SimpleMeterRegistry());
+
+  @Test
+  void putAndGet() {
+    cache.put(1, new ProductPayload("\"t\"", new byte[] {1, 2, 3}), cache.stamp());
+    ProductPayload payload = cache.get(1);
+    assertEquals("\"t\"", payload.getETag());
+    assertArrayEquals(new byte[] {1, 2, 3}, payload.getBody());
+    assertNull(cache.get(2));
+  }
+
+  @Test
+  void invalidate() {
+    cache.put(1, payload(1), cache.stamp());
+    cache.invalidate(1);
+    assertNull(cache.get(1));
+  }
+
+  @Test
+  void putRacingAnInvalidationIsDropped() {
+    long stamp = cache.stamp();
+    cache.invalidate(1);
+    cache.put(1, payload(1), stamp);
+    assertNull(cache.get(1));
+  }
+
+  @Test
+  void payloadLargerThanSlotIsNotCached() {
+    cache.put(1, new ProductPayload("\"t\"", new byte[6]), cache.stamp());
+    assertNull(cache.get(1));
+  }
+
+  @Test
+  void evictsUnreferencedSlotsWhenFull() {
+    for (int productId = 1; productId <= 8; productId++) {
+      cache.put(productId, payload(productId), cache.stamp());
+    }
+    // Mark productId 1 as recently used, so the CLOCK sweep passes over it
+    assertNotNull(cache.get(1));
+
+    cache.put(9, payload(9), cache.stamp());
+
+    assertArrayEquals(new byte[] {1}, cache.get(1).getBody());
+    assertNull(cache.get(2));
+    assertArrayEquals(new byte[] {9}, cache.get(9).getBody());
+    for (int productId = 3; productId <= 8; productId++) {
+      assertArrayEquals(new byte[] {(byte) productId}, cache.get(productId).getBody());
+    }
+  }
+
+  private static ProductPayload payload(int productId) {
+    return new ProductPayload("\"" + productId + "\"", new byte[] {(byte) productId});
+  }
+}
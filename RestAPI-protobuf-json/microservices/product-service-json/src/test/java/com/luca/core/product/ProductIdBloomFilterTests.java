@@ -0,0 +1,37 @@
+package com.luca.core.product;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.luca.core.product.cache.ProductIdBloomFilter;
+import org.junit.jupiter.api.Test;
+
+class ProductIdBloomFilterTests {
+
+  @Test
+  void noFalseNegatives() {
+    ProductIdBloomFilter filter = new ProductIdBloomFilter(10_000, 0.01);
+    for (int productId = 1; productId <= 10_000; productId++) {
+      filter.add(productId);
+    }
+    for (int productId = 1; productId <= 10_000; productId++) {
+      assertTrue(filter.mightContain(productId));
+    }
+  }
+
+  @Test
+  void falsePositiveRateStaysNearTarget() {
+    ProductIdBloomFilter filter = new ProductIdBloomFilter(10_000, 0.01);
+    for (int productId = 1; productId <= 10_000; productId++) {
+      filter.add(productId);
+    }
+
+    int falsePositives = 0;
+    for (int productId = 1_000_001; productId <= 1_100_000; productId++) {
+      if (filter.mightContain(productId)) {
+        falsePositives++;
+      }
+    }
+    assertTrue(falsePositives < 2_000, "false positives: " + falsePositives);
+    assertEquals(0.01, filter.expectedFalsePositiveProbability(), 0.005);
+  }
+}
@@ -1,22 +1,35 @@
 package com.luca.core.product;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
 import static org.springframework.http.HttpStatus.*;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
 import static reactor.core.publisher.Mono.just;
 
 import com.luca.core.product.web.dto.Product;
+import com.luca.core.product.web.dto.ProductPage;
+import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import com.luca.core.product.persistence.ProductRepository;
-
-@SpringBootTest(webEnvironment = RANDOM_PORT)
+import com.luca.core.product.web.filters.MongoRoundTripFilter;
+
+// deleteAll() bypasses the caches and the lookup filter, which would otherwise keep
+// products of earlier tests visible, or their productIds missing
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
+  "app.cache.enabled=false",
+  "app.cache.payload.store=none",
+  "app.lookup-filter.enabled=false"})
 class ProductServiceApplicationTests extends MongoDbTestBase {
 
   @Autowired private WebTestClient client;
@@ -40,6 +53,158 @@ class ProductServiceApplicationTests extends MongoDbTestBase {
     getAndVerifyProduct(productId, OK).jsonPath("$.productId").isEqualTo(productId);
   }
 
+  @Test
+  void getProductNotModified() {
+
+    int productId = 1;
+
+    postAndVerifyProduct(productId, OK);
+
+    String eTag = client.get()
+      .uri("/product/" + productId)
+      .accept(APPLICATION_JSON)
+      .exchange()
+      .expectStatus().isOk()
+      .returnResult(byte[].class)
+      .getResponseHeaders().getETag();
+    assertNotNull(eTag);
+
+    client.get()
+      .uri("/product/" + productId)
+      .accept(APPLICATION_JSON)
+      .header(HttpHeaders.IF_NONE_MATCH, eTag)
+      .exchange()
+      .expectStatus().isNotModified()
+      .expectHeader().valueEquals(HttpHeaders.ETAG, eTag)
+      .expectBody().isEmpty();
+  }
+
+  @Test
+  void patchProductWithMergePatch() {
+
+    int productId = 1;
+
+    postAndVerifyProduct(productId, OK);
+
+    String eTag = client.get()
+      .uri("/product/" + productId)
+      .accept(APPLICATION_JSON)
+      .exchange()
+      .expectStatus().isOk()
+      .returnResult(byte[].class)
+      .getResponseHeaders().getETag();
+
+    client.patch()
+      .uri("/product/" + productId)
+      .contentType(MediaType.valueOf("application/merge-patch+json"))
+      .accept(APPLICATION_JSON)
+      .header(HttpHeaders.IF_MATCH, eTag)
+      .bodyValue("{\"weight\":7}")
+      .exchange()
+      .expectStatus().isOk()
+      .expectBody()
+      .jsonPath("$.weight").isEqualTo(7)
+      .jsonPath("$.name").isEqualTo("Name " + productId);
+
+    // The tag the patch was based on is stale now
+    client.patch()
+      .uri("/product/" + productId)
+      .contentType(MediaType.valueOf("application/merge-patch+json"))
+      .accept(APPLICATION_JSON)
+      .header(HttpHeaders.IF_MATCH, eTag)
+      .bodyValue("{\"weight\":8}")
+      .exchange()
+      .expectStatus().isEqualTo(PRECONDITION_FAILED);
+  }
+
+  @Test
+  void createProductsReportsDuplicatesPerItem() {
+
+    postAndVerifyProduct(1, OK);
+
+    List<Product> products = List.of(
+      new Product(1, "Name 1", 1, null),
+      new Product(2, "Name 2", 2, null),
+      new Product(2, "Name 2", 2, null));
+
+    client.post()
+      .uri("/products")
+      .bodyValue(products)
+      .accept(APPLICATION_JSON)
+      .exchange()
+      .expectStatus().isOk()
+      .expectBody()
+      .jsonPath("$.items.length()").isEqualTo(3)
+      .jsonPath("$.items[0].status").isEqualTo("DUPLICATE")
+      .jsonPath("$.items[1].status").isEqualTo("CREATED")
+      .jsonPath("$.items[2].status").isEqualTo("DUPLICATE");
+
+    assertEquals(2, repository.count());
+    getAndVerifyProduct(2, OK);
+  }
+
+  @Test
+  void getProductsReportsMissingIds() {
+
+    postAndVerifyProduct(1, OK);
+    postAndVerifyProduct(3, OK);
+
+    client.get()
+      .uri("/products?ids=3,2,1")
+      .accept(APPLICATION_JSON)
+      .exchange()
+      .expectStatus().isOk()
+      .expectBody()
+      .jsonPath("$.products.length()").isEqualTo(2)
+      .jsonPath("$.products[0].productId").isEqualTo(3)
+      .jsonPath("$.products[1].productId").isEqualTo(1)
+      .jsonPath("$.missingProductIds[0]").isEqualTo(2);
+  }
+
+  @Test
+  void streamProductsAsNdjson() {
+
+    postAndVerifyProduct(2, OK);
+    postAndVerifyProduct(1, OK);
+
+    String body = client.get()
+      .uri("/products/stream")
+      .accept(APPLICATION_NDJSON)
+      .exchange()
+      .expectStatus().isOk()
+      .expectBody(String.class).returnResult().getResponseBody();
+
+    String[] lines = body.split("\n");
+    assertEquals(2, lines.length);
+    assertTrue(lines[0].startsWith("{\"productId\":1,"));
+    assertTrue(lines[1].startsWith("{\"productId\":2,"));
+  }
+
+  @Test
+  void pageThroughProducts() {
+
+    for (int productId = 1; productId <= 3; productId++) {
+      postAndVerifyProduct(productId, OK);
+    }
+
+    String token = client.get()
+      .uri("/products/page?size=2")
+      .accept(APPLICATION_JSON)
+      .exchange()
+      .expectStatus().isOk()
+      .expectBody(ProductPage.class).returnResult().getResponseBody().getNextPageToken();
+
+    client.get()
+      .uri("/products/page?size=2&token=" + token)
+      .accept(APPLICATION_JSON)
+      .exchange()
+      .expectStatus().isOk()
+      .expectBody()
+      .jsonPath("$.products.length()").isEqualTo(1)
+      .jsonPath("$.products[0].productId").isEqualTo(3)
+      .jsonPath("$.nextPageToken").doesNotExist();
+  }
+
   @Test
   void duplicateError() {
 
@@ -68,6 +233,28 @@ class ProductServiceApplicationTests extends MongoDbTestBase {
     deleteAndVerifyProduct(productId, OK);
   }
 
+  @Test
+  void singleRoundTripPerRequest() {
+
+    int productId = 1;
+
+    postAndVerifyProduct(productId, OK)
+      .consumeWith(result -> assertEquals("1", result.getResponseHeaders().getFirst(MongoRoundTripFilter.HEADER)));
+
+    client.get()
+      .uri("/product/" + productId)
+      .accept(APPLICATION_JSON)
+      .exchange()
+      .expectStatus().isOk()
+      .expectHeader().valueEquals(MongoRoundTripFilter.HEADER, "1");
+
+    client.delete()
+      .uri("/product/" + productId)
+      .exchange()
+      .expectStatus().isOk()
+      .expectHeader().valueEquals(MongoRoundTripFilter.HEADER, "1");
+  }
+
   @Test
   void getProductInvalidParameterString() {
 
@@ -0,0 +1,71 @@
+package com.luca.core.product.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.luca.core.product.web.codec.ProductFormat;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * On-heap {@link ProductPayloadCache}, bounded by the total size of the cached payloads.
+ */
+@Component
+@ConditionalOnProperty(name = "app.cache.payload.store", havingValue = "heap")
+public class HeapProductPayloadCache implements ProductPayloadCache {
+
+  private final Cache<Key, ProductPayload> cache;
+
+  private final AtomicLong invalidations = new AtomicLong();
+
+  @Autowired
+  public HeapProductPayloadCache(
+    @Value("${app.cache.payload.max-bytes:64MB}") DataSize maxBytes,
+    @Value("${app.cache.ttl:10m}") Duration ttl,
+    MeterRegistry registry) {
+
+    cache = Caffeine.newBuilder()
+      .maximumWeight(maxBytes.toBytes())
+      .weigher((Key key, ProductPayload payload) -> payload.getBody().length + payload.getETag().length())
+      .expireAfterWrite(ttl)
+      .recordStats()
+      .build();
+    CaffeineCacheMetrics.monitor(registry, cache, "product-payloads");
+  }
+
+  @Override
+  public ProductPayload get(int productId, ProductFormat format) {
+    return cache.getIfPresent(new Key(productId, format));
+  }
+
+  @Override
+  public long stamp() {
+    return invalidations.get();
+  }
+
+  @Override
+  public void put(int productId, ProductFormat format, ProductPayload payload, long stamp) {
+    Key key = new Key(productId, format);
+    cache.put(key, payload);
+    if (invalidations.get() != stamp) {
+      cache.invalidate(key);
+    }
+  }
+
+  @Override
+  public void invalidate(int productId) {
+    invalidations.incrementAndGet();
+    for (ProductFormat format : ProductFormat.values()) {
+      cache.invalidate(new Key(productId, format));
+    }
+  }
+
+  private record Key(int productId, ProductFormat format) {
+  }
+}
@@ -0,0 +1,70 @@
+package com.luca.core.product.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.luca.core.product.persistence.ProductEntity;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.util.function.IntFunction;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * Bounded read-through cache of product entities keyed by productId.
+ *
+ * Eviction is Caffeine's W-TinyLFU policy, so a small hot set of productIds stays
+ * resident even when scans of cold ids pass through. Concurrent misses for the
+ * same productId share one load, and invalidating a productId also discards a
+ * load that is still in flight, so a read racing a delete can not re-populate
+ * the cache with the deleted entity.
+ *
+ * Hit, miss and eviction counts are published as the "cache.*" meters tagged
+ * with cache=products.
+ *
+ * Invalidation is local: with more than one writer, a product changed or deleted elsewhere
+ * is served stale until its entry expires. Off by default.
+ */
+@Component
+public class ProductCache {
+
+  private final AsyncCache<Integer, ProductEntity> cache;
+
+  @Autowired
+  public ProductCache(
+    @Value("${app.cache.enabled:false}") boolean enabled,
+    @Value("${app.cache.max-entries:10000}") long maxEntries,
+    @Value("${app.cache.ttl:10m}") Duration ttl,
+    MeterRegistry registry) {
+
+    if (enabled) {
+      cache = Caffeine.newBuilder()
+        .maximumSize(maxEntries)
+        .expireAfterWrite(ttl)
+        .recordStats()
+        .buildAsync();
+      CaffeineCacheMetrics.monitor(registry, cache.synchronous(), "products");
+    } else {
+      cache = null;
+    }
+  }
+
+  /**
+   * Returns the cached entity, or subscribes to the loader on a miss. Empty results are not cached.
+   */
+  public Mono<ProductEntity> get(int productId, IntFunction<Mono<ProductEntity>> loader) {
+    if (cache == null) {
+      return loader.apply(productId);
+    }
+    // suppressCancel: the load is shared with other subscribers of the same productId
+    return Mono.fromFuture(() -> cache.get(productId, (key, executor) -> loader.apply(key).toFuture()), true);
+  }
+
+  public void invalidate(int productId) {
+    if (cache != null) {
+      cache.synchronous().invalidate(productId);
+    }
+  }
+}
@@ -0,0 +1,88 @@
+package com.luca.core.product.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread safe Bloom filter over int productIds.
+ *
+ * Sized from the expected number of products and the target false positive
+ * probability; the k probe positions are derived from one 64-bit mix of the
+ * productId (Kirsch-Mitzenmacher double hashing).
+ */
+public class ProductIdBloomFilter {
+
+  private final AtomicLongArray words;
+
+  private final long bitCount;
+
+  private final int hashCount;
+
+  public ProductIdBloomFilter(long expectedProducts, double falsePositiveProbability) {
+    if (expectedProducts < 1 || falsePositiveProbability <= 0 || falsePositiveProbability >= 1) {
+      throw new IllegalArgumentException("Invalid Bloom filter sizing, expected products: "
+        + expectedProducts + ", false positive probability: " + falsePositiveProbability);
+    }
+
+    long bits = (long) Math.ceil(-expectedProducts * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+    int wordCount = Math.toIntExact((bits + 63) / 64);
+    this.words = new AtomicLongArray(wordCount);
+    this.bitCount = wordCount * 64L;
+    this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedProducts * Math.log(2)));
+  }
+
+  public void add(int productId) {
+    long hash = mix(productId);
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32);
+    for (int i = 0; i < hashCount; i++) {
+      long bit = index(h1 + i * h2);
+      int word = (int) (bit >>> 6);
+      long mask = 1L << bit;
+      long current = words.get(word);
+      while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask)) {
+        current = words.get(word);
+      }
+    }
+  }
+
+  public boolean mightContain(int productId) {
+    long hash = mix(productId);
+    int h1 = (int) hash;
+    int h2 = (int) (hash >>> 32);
+    for (int i = 0; i < hashCount; i++) {
+      long bit = index(h1 + i * h2);
+      if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the false positive probability implied by the current fill ratio
+   */
+  public double expectedFalsePositiveProbability() {
+    long set = 0;
+    for (int i = 0; i < words.length(); i++) {
+      set += Long.bitCount(words.get(i));
+    }
+    return Math.pow((double) set / bitCount, hashCount);
+  }
+
+  private long index(int combinedHash) {
+    return (combinedHash & Integer.MAX_VALUE) % bitCount;
+  }
+
+  /**
+   * MurmurHash3 fmix64 finalizer.
+   */
+  private static long mix(int productId) {
+    long h = productId;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+}
@@ -0,0 +1,227 @@
+package com.luca.core.product.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.luca.core.product.persistence.ProductPersistence;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Answers "does this productId definitely not exist?" without a database round trip.
+ *
+ * Two sources are consulted:
+ * <ul>
+ *   <li>a Bloom filter of all existing productIds, built from the products collection once
+ *       the application is ready, kept current by {@link #recordCreated} and rebuilt
+ *       periodically, since deleted productIds can not be removed from a Bloom filter</li>
+ *   <li>a short-lived negative cache of productIds that were looked up and not found,
+ *       which also covers Bloom filter false positives and deleted products</li>
+ * </ul>
+ *
+ * Until the first build completes, only the negative cache is used.
+ *
+ * Only correct with a single writer: both sources learn of new products from this
+ * instance's creates only, so a product inserted by another service, another replica or
+ * directly in MongoDB is reported missing until the next rebuild or negative cache expiry.
+ * Off by default for that reason; only reads consult it.
+ *
+ * Meters: "product.lookup.filter.rejections" tagged by source, "product.lookup.filter.false-positives"
+ * (Bloom filter passed, database miss), "product.lookup.filter.false-positive-rate" (observed) and
+ * "product.lookup.filter.bloom.expected-fpp" (implied by the fill ratio).
+ */
+@Component
+public class ProductLookupFilter {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ProductLookupFilter.class);
+
+  private final boolean enabled;
+
+  private final long expectedProducts;
+
+  private final double falsePositiveProbability;
+
+  private final Duration rebuildInterval;
+
+  private final ProductPersistence persistence;
+
+  private final Cache<Integer, Boolean> missing;
+
+  private final AtomicLong invalidations = new AtomicLong();
+
+  private volatile ProductIdBloomFilter active;
+
+  private volatile ProductIdBloomFilter building;
+
+  private final Counter bloomRejections;
+
+  private final Counter negativeCacheRejections;
+
+  private final Counter falsePositives;
+
+  private Disposable rebuilds;
+
+  @Autowired
+  public ProductLookupFilter(
+    @Value("${app.lookup-filter.enabled:false}") boolean enabled,
+    @Value("${app.lookup-filter.expected-products:1000000}") long expectedProducts,
+    @Value("${app.lookup-filter.false-positive-probability:0.01}") double falsePositiveProbability,
+    @Value("${app.lookup-filter.rebuild-interval:6h}") Duration rebuildInterval,
+    @Value("${app.lookup-filter.negative-cache.max-entries:100000}") long negativeCacheMaxEntries,
+    @Value("${app.lookup-filter.negative-cache.ttl:30s}") Duration negativeCacheTtl,
+    ProductPersistence persistence,
+    MeterRegistry registry) {
+
+    this.enabled = enabled;
+    this.expectedProducts = expectedProducts;
+    this.falsePositiveProbability = falsePositiveProbability;
+    this.rebuildInterval = rebuildInterval;
+    this.persistence = persistence;
+    this.missing = Caffeine.newBuilder()
+      .maximumSize(negativeCacheMaxEntries)
+      .expireAfterWrite(negativeCacheTtl)
+      .build();
+
+    bloomRejections = Counter.builder("product.lookup.filter.rejections")
+      .tag("source", "bloom")
+      .register(registry);
+    negativeCacheRejections = Counter.builder("product.lookup.filter.rejections")
+      .tag("source", "negative-cache")
+      .register(registry);
+    falsePositives = Counter.builder("product.lookup.filter.false-positives")
+      .description("Lookups the Bloom filter let through that found no product")
+      .register(registry);
+    Gauge.builder("product.lookup.filter.false-positive-rate", this, ProductLookupFilter::observedFalsePositiveRate)
+      .register(registry);
+    Gauge.builder("product.lookup.filter.bloom.expected-fpp", this, ProductLookupFilter::expectedFalsePositiveProbability)
+      .register(registry);
+  }
+
+  /**
+   * @return true if the productId is known not to exist
+   */
+  public boolean isKnownMissing(int productId) {
+    if (!enabled) {
+      return false;
+    }
+
+    ProductIdBloomFilter filter = active;
+    if (filter != null && !filter.mightContain(productId)) {
+      bloomRejections.increment();
+      return true;
+    }
+    if (missing.getIfPresent(productId) != null) {
+      negativeCacheRejections.increment();
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * To be taken before a lookup, see {@link #recordMissing}.
+   */
+  public long stamp() {
+    return invalidations.get();
+  }
+
+  /**
+   * Records a lookup that did not find the product. Ignored if a product was created
+   * since the stamp was taken, as the lookup may have raced that create.
+   */
+  public void recordMissing(int productId, long stamp) {
+    if (!enabled) {
+      return;
+    }
+
+    if (active != null) {
+      falsePositives.increment();
+    }
+    missing.put(productId, Boolean.TRUE);
+    if (invalidations.get() != stamp) {
+      missing.invalidate(productId);
+    }
+  }
+
+  public void recordCreated(int productId) {
+    if (!enabled) {
+      return;
+    }
+
+    ProductIdBloomFilter filter = active;
+    if (filter != null) {
+      filter.add(productId);
+    }
+    filter = building;
+    if (filter != null) {
+      filter.add(productId);
+    }
+    invalidations.incrementAndGet();
+    missing.invalidate(productId);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void buildAfterStartup() {
+    if (!enabled) {
+      return;
+    }
+
+    rebuilds = Flux.interval(Duration.ZERO, rebuildInterval, Schedulers.boundedElastic())
+      .onBackpressureDrop()
+      .concatMap(tick -> rebuild(), 1)
+      .subscribe();
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (rebuilds != null) {
+      rebuilds.dispose();
+    }
+  }
+
+  Mono<Void> rebuild() {
+    return Mono.defer(() -> {
+        long startedAt = System.nanoTime();
+        ProductIdBloomFilter filter = new ProductIdBloomFilter(expectedProducts, falsePositiveProbability);
+        building = filter;
+
+        return persistence.findAllProductIds()
+          .doOnNext(filter::add)
+          .count()
+          .doOnNext(count -> {
+            active = filter;
+            LOG.info("Built productId Bloom filter from {} products in {} ms",
+              count, (System.nanoTime() - startedAt) / 1_000_000);
+          });
+      })
+      .doOnError(e -> LOG.warn("Failed to build productId Bloom filter: {}", e.toString()))
+      .onErrorResume(e -> Mono.empty())
+      .doFinally(signal -> building = null)
+      .subscribeOn(Schedulers.boundedElastic())
+      .then();
+  }
+
+  private double observedFalsePositiveRate() {
+    double passedButMissing = falsePositives.count();
+    double total = passedButMissing + bloomRejections.count();
+    return total == 0 ? 0 : passedButMissing / total;
+  }
+
+  private double expectedFalsePositiveProbability() {
+    ProductIdBloomFilter filter = active;
+    return filter == null ? Double.NaN : filter.expectedFalsePositiveProbability();
+  }
+}
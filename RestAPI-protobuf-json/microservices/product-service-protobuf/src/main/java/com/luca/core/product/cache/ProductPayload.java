@@ -0,0 +1,24 @@
+package com.luca.core.product.cache;
+
+/**
+ * An encoded GET response together with the entity tag it was encoded for.
+ */
+public class ProductPayload {
+
+  private final String eTag;
+
+  private final byte[] body;
+
+  public ProductPayload(String eTag, byte[] body) {
+    this.eTag = eTag;
+    this.body = body;
+  }
+
+  public String getETag() {
+    return eTag;
+  }
+
+  public byte[] getBody() {
+    return body;
+  }
+}
@@ -0,0 +1,30 @@
+package com.luca.core.product.cache;
+
+import com.luca.core.product.web.codec.ProductFormat;
+
+/**
+ * Cache of fully encoded GET responses keyed by productId and format.
+ *
+ * Loads race with invalidations, so a writer takes a {@link #stamp()} before it
+ * starts loading and passes it to {@link #put}; the entry is dropped again if any
+ * productId was invalidated in between.
+ *
+ * Invalidation is local, as for {@link ProductCache}: with more than one writer, stale
+ * bodies and entity tags are served until they expire. Off by default.
+ */
+public interface ProductPayloadCache {
+
+  /**
+   * @return the encoded product and its entity tag, or null on a miss
+   */
+  ProductPayload get(int productId, ProductFormat format);
+
+  long stamp();
+
+  void put(int productId, ProductFormat format, ProductPayload payload, long stamp);
+
+  /**
+   * Drops the product in every format.
+   */
+  void invalidate(int productId);
+}
@@ -0,0 +1,56 @@
+package com.luca.core.product.mapper;
+
+import com.luca.core.product.web.dto.Product;
+import com.luca.core.product.web.dto.ProductCreateResult;
+import com.luca.core.product.web.dto.ProductList;
+import com.luca.core.product.web.dto.ProductPage;
+import com.luca.product.protobuf.ProductProto;
+import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
+import org.mapstruct.MappingConstants;
+import org.mapstruct.ValueMapping;
+
+/**
+ * Maps the Protobuf messages to the Jackson DTOs of application/json responses.
+ */
+@Mapper(componentModel = "spring")
+public interface ProductDtoMapper {
+
+  Product toDto(ProductProto.Product product);
+
+  @Mapping(target = "products", source = "productsList")
+  @Mapping(target = "missingProductIds", source = "missingProductIdsList")
+  ProductList toDto(ProductProto.ProductList products);
+
+  @Mapping(target = "products", source = "productsList")
+  @Mapping(target = "nextPageToken", expression = "java(page.getNextPageToken().isEmpty() ? null : page.getNextPageToken())")
+  ProductPage toDto(ProductProto.ProductPage page);
+
+  @Mapping(target = "items", source = "itemsList")
+  ProductCreateResult toDto(ProductProto.ProductCreateResult result);
+
+  ProductCreateResult.Item toDto(ProductProto.ProductCreateResult.Item item);
+
+  @ValueMapping(target = MappingConstants.NULL, source = "STATUS_UNSPECIFIED")
+  @ValueMapping(target = MappingConstants.NULL, source = "UNRECOGNIZED")
+  ProductCreateResult.Status toDto(ProductProto.ProductCreateResult.Status status);
+
+  /**
+   * The DTO of a message, null if it has none.
+   */
+  default Object toDto(com.google.protobuf.Message message) {
+    if (message instanceof ProductProto.Product product) {
+      return toDto(product);
+    }
+    if (message instanceof ProductProto.ProductList products) {
+      return toDto(products);
+    }
+    if (message instanceof ProductProto.ProductPage page) {
+      return toDto(page);
+    }
+    if (message instanceof ProductProto.ProductCreateResult result) {
+      return toDto(result);
+    }
+    return null;
+  }
+}
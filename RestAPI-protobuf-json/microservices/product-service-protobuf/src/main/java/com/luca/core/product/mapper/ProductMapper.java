@@ -15,7 +15,15 @@ public interface ProductMapper {
   Product entityToApi(ProductEntity entity);
 
   @Mappings({
-          @Mapping(target = "id", ignore = true), @Mapping(target = "version", ignore = true)
+          @Mapping(target = "id", ignore = true), @Mapping(target = "version", ignore = true),
+          @Mapping(target = "payload", ignore = true)
   })
   ProductEntity apiToEntity(Product api);
-}
\ No newline at end of file
+
+  /**
+   * Encodes the entity as stored in {@link ProductEntity#getPayload}, without serviceAddress.
+   */
+  default byte[] entityToPayload(ProductEntity entity) {
+    return entityToApi(entity).toByteArray();
+  }
+}
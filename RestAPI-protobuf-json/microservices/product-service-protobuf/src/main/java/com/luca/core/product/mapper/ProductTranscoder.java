@@ -0,0 +1,268 @@
+package com.luca.core.product.mapper;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+import com.luca.core.product.persistence.ProductLayout;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.bson.BsonSerializationException;
+import org.bson.RawBsonDocument;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Writes the protobuf wire format of a Product straight from the BSON bytes of its stored
+ * document, without decoding it into a ProductEntity, mapping it or building the message.
+ *
+ * The document is scanned in place, names are compared as bytes and the UTF-8 name is copied
+ * as is; per call only the returned arrays are allocated. A stored payload, see
+ * {@link com.luca.core.product.persistence.ProductEntity#getPayload}, is copied verbatim.
+ * The result equals Product.toByteArray() of the mapped entity with the serviceAddress set.
+ *
+ * Used by GET /product/{productId} when "app.get.transcode.enabled".
+ */
+@Component
+@ConditionalOnProperty(name = "app.get.transcode.enabled", havingValue = "true")
+public final class ProductTranscoder {
+
+  // BSON element types read by name, others are only skipped
+  private static final byte DOUBLE = 0x01;
+  private static final byte STRING = 0x02;
+  private static final byte BINARY = 0x05;
+  private static final byte OBJECT_ID = 0x07;
+  private static final byte NULL = 0x0A;
+  private static final byte INT32 = 0x10;
+  private static final byte INT64 = 0x12;
+
+  private static final byte[] VERSION = ascii("version");
+
+  private static final byte[] NAME = ascii("name");
+
+  private static final byte[] WEIGHT = ascii("weight");
+
+  private static final byte[] PAYLOAD = ascii("payload");
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private final byte[] keyField;
+
+  private final byte[] idField;
+
+  @Autowired
+  public ProductTranscoder(@Value("${app.persistence.layout:classic}") String layout) {
+    this(ProductLayout.of(layout));
+  }
+
+  public ProductTranscoder(ProductLayout layout) {
+    this.keyField = ascii(layout.keyField());
+    this.idField = ascii(layout.idField());
+  }
+
+  /**
+   * Encodes the Product of the document.
+   *
+   * @param serviceAddressField the encoded serviceAddress field, appended as the last field
+   */
+  public byte[] toProduct(RawBsonDocument document, byte[] serviceAddressField) {
+    ByteBuffer buffer = document.getByteBuffer().asNIO();
+    byte[] bson = buffer.array();
+    int start = buffer.arrayOffset() + buffer.position();
+
+    int payload = valueOf(bson, start, PAYLOAD);
+    if (payload >= 0 && bson[payload - PAYLOAD.length - 2] == BINARY) {
+      int length = readInt32(bson, payload);
+      byte[] body = new byte[length + serviceAddressField.length];
+      System.arraycopy(bson, payload + 5, body, 0, length);
+      System.arraycopy(serviceAddressField, 0, body, length, serviceAddressField.length);
+      return body;
+    }
+
+    int productId = readInt(bson, valueOf(bson, start, keyField), keyField);
+    int weight = readInt(bson, valueOf(bson, start, WEIGHT), WEIGHT);
+    int name = valueOf(bson, start, NAME);
+    int nameLength = 0;
+    if (name >= 0) {
+      byte type = bson[name - NAME.length - 2];
+      if (type == STRING) {
+        nameLength = readInt32(bson, name) - 1;
+      } else if (type != NULL) {
+        throw new BsonSerializationException("Unexpected BSON type of name: " + type);
+      }
+    }
+
+    int size = serviceAddressField.length;
+    if (productId != 0) {
+      size += CodedOutputStream.computeInt32Size(1, productId);
+    }
+    if (nameLength > 0) {
+      size += CodedOutputStream.computeTagSize(2) + CodedOutputStream.computeUInt32SizeNoTag(nameLength) + nameLength;
+    }
+    if (weight != 0) {
+      size += CodedOutputStream.computeInt32Size(3, weight);
+    }
+
+    byte[] body = new byte[size];
+    CodedOutputStream output = CodedOutputStream.newInstance(body);
+    try {
+      if (productId != 0) {
+        output.writeInt32(1, productId);
+      }
+      if (nameLength > 0) {
+        output.writeTag(2, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        output.writeUInt32NoTag(nameLength);
+        output.write(bson, name + 4, nameLength);
+      }
+      if (weight != 0) {
+        output.writeInt32(3, weight);
+      }
+      output.write(serviceAddressField, 0, serviceAddressField.length);
+      output.checkNoSpaceLeft();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return body;
+  }
+
+  /**
+   * The hex string of the generated ObjectId, as in ProductEntity#getId, or null if absent.
+   */
+  public String documentId(RawBsonDocument document) {
+    ByteBuffer buffer = document.getByteBuffer().asNIO();
+    byte[] bson = buffer.array();
+    int id = valueOf(bson, buffer.arrayOffset() + buffer.position(), idField);
+    if (id < 0 || bson[id - idField.length - 2] != OBJECT_ID) {
+      return null;
+    }
+
+    char[] hex = new char[24];
+    for (int i = 0; i < 12; i++) {
+      hex[2 * i] = HEX[(bson[id + i] >> 4) & 0xF];
+      hex[2 * i + 1] = HEX[bson[id + i] & 0xF];
+    }
+    return new String(hex);
+  }
+
+  /**
+   * The @Version of the document, or null if absent.
+   */
+  public Integer version(RawBsonDocument document) {
+    ByteBuffer buffer = document.getByteBuffer().asNIO();
+    byte[] bson = buffer.array();
+    int version = valueOf(bson, buffer.arrayOffset() + buffer.position(), VERSION);
+    return version < 0 || bson[version - VERSION.length - 2] == NULL ? null : readInt(bson, version, VERSION);
+  }
+
+  /**
+   * Finds a top-level field of the document starting at the offset.
+   *
+   * @return the offset of its value, or -1 if absent; its type is the byte at
+   *   value - name.length - 2
+   */
+  private static int valueOf(byte[] bson, int document, byte[] name) {
+    int end = document + readInt32(bson, document) - 1;
+    int element = document + 4;
+    while (element < end) {
+      byte type = bson[element];
+      int nameStart = element + 1;
+      int nameEnd = nameStart;
+      while (bson[nameEnd] != 0) {
+        nameEnd++;
+      }
+      int value = nameEnd + 1;
+      if (nameEnd - nameStart == name.length && matches(bson, nameStart, name)) {
+        return value;
+      }
+      element = value + valueSize(bson, type, value);
+    }
+    return -1;
+  }
+
+  private static boolean matches(byte[] bson, int offset, byte[] name) {
+    for (int i = 0; i < name.length; i++) {
+      if (bson[offset + i] != name[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int valueSize(byte[] bson, byte type, int value) {
+    switch (type) {
+      case DOUBLE, 0x09, 0x11, INT64:
+        return 8;
+      case STRING, 0x0D, 0x0E:
+        return 4 + readInt32(bson, value);
+      case 0x03, 0x04, 0x0F:
+        return readInt32(bson, value);
+      case BINARY:
+        return 5 + readInt32(bson, value);
+      case 0x06, NULL, 0x7F, (byte) 0xFF:
+        return 0;
+      case OBJECT_ID:
+        return 12;
+      case 0x08:
+        return 1;
+      case 0x0B: {
+        int end = value;
+        while (bson[end] != 0) {
+          end++;
+        }
+        end++;
+        while (bson[end] != 0) {
+          end++;
+        }
+        return end + 1 - value;
+      }
+      case 0x0C:
+        return 4 + readInt32(bson, value) + 12;
+      case INT32:
+        return 4;
+      case 0x13:
+        return 16;
+      default:
+        throw new BsonSerializationException("Unsupported BSON type: " + type);
+    }
+  }
+
+  /**
+   * Reads a number field as int, 0 if absent; numbers written by other clients may not be int32.
+   */
+  private static int readInt(byte[] bson, int value, byte[] name) {
+    if (value < 0) {
+      return 0;
+    }
+
+    byte type = bson[value - name.length - 2];
+    switch (type) {
+      case INT32:
+        return readInt32(bson, value);
+      case INT64:
+        return (int) readInt64(bson, value);
+      case DOUBLE:
+        return (int) Double.longBitsToDouble(readInt64(bson, value));
+      case NULL:
+        return 0;
+      default:
+        throw new BsonSerializationException("Unexpected BSON type of " + new String(name, StandardCharsets.US_ASCII) + ": " + type);
+    }
+  }
+
+  private static int readInt32(byte[] bson, int offset) {
+    return (bson[offset] & 0xFF)
+      | (bson[offset + 1] & 0xFF) << 8
+      | (bson[offset + 2] & 0xFF) << 16
+      | (bson[offset + 3] & 0xFF) << 24;
+  }
+
+  private static long readInt64(byte[] bson, int offset) {
+    return (readInt32(bson, offset) & 0xFFFFFFFFL) | (long) readInt32(bson, offset + 4) << 32;
+  }
+
+  private static byte[] ascii(String name) {
+    return name.getBytes(StandardCharsets.US_ASCII);
+  }
+}
@@ -0,0 +1,117 @@
+package com.luca.core.product.migration;
+
+import com.luca.core.product.mapper.ProductMapper;
+import com.luca.core.product.persistence.ProductEntity;
+import com.luca.core.product.persistence.ProductPersistence;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Stores the encoded payload of every product that has none, i.e. documents written before
+ * "app.persistence.stored-payload.enabled" was turned on and documents patched since.
+ *
+ * Runs once the application is ready and then every "backfill-interval", walking the
+ * productId index in batches of "backfill-batch-size". A payload is only stored if the
+ * document was not updated after it was read; skipped documents are picked up by the next run.
+ *
+ * Meter: "product.payload.backfilled".
+ */
+@Component
+@ConditionalOnProperty(name = "app.persistence.stored-payload.enabled", havingValue = "true")
+public class ProductPayloadBackfill {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ProductPayloadBackfill.class);
+
+  private final int batchSize;
+
+  private final Duration interval;
+
+  private final ProductPersistence persistence;
+
+  private final ProductMapper mapper;
+
+  private final Counter backfilled;
+
+  private Disposable runs;
+
+  @Autowired
+  public ProductPayloadBackfill(
+    @Value("${app.persistence.stored-payload.backfill-batch-size:500}") int batchSize,
+    @Value("${app.persistence.stored-payload.backfill-interval:5m}") Duration interval,
+    ProductPersistence persistence,
+    ProductMapper mapper,
+    MeterRegistry registry) {
+
+    this.batchSize = batchSize;
+    this.interval = interval;
+    this.persistence = persistence;
+    this.mapper = mapper;
+    this.backfilled = Counter.builder("product.payload.backfilled")
+      .description("Stored payloads written by the backfill")
+      .register(registry);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void startAfterStartup() {
+    runs = Flux.interval(Duration.ZERO, interval, Schedulers.boundedElastic())
+      .onBackpressureDrop()
+      .concatMap(tick -> backfill(), 1)
+      .subscribe();
+  }
+
+  @PreDestroy
+  public void stop() {
+    if (runs != null) {
+      runs.dispose();
+    }
+  }
+
+  /**
+   * @return the number of payloads stored
+   */
+  Mono<Long> backfill() {
+    return Mono.defer(() -> {
+        long startedAt = System.nanoTime();
+        return batchAfter(0)
+          .expand(batch -> batch.size() < batchSize ? Mono.empty() : batchAfter(batch.get(batch.size() - 1).getProductId()))
+          .concatMap(this::store)
+          .reduce(0L, Long::sum)
+          .doOnNext(stored -> {
+            if (stored > 0) {
+              LOG.info("Backfilled {} product payloads in {} ms", stored, (System.nanoTime() - startedAt) / 1_000_000);
+            }
+          });
+      })
+      .doOnError(e -> LOG.warn("Failed to backfill product payloads: {}", e.toString()))
+      .onErrorResume(e -> Mono.empty())
+      .subscribeOn(Schedulers.boundedElastic());
+  }
+
+  private Mono<List<ProductEntity>> batchAfter(int afterProductId) {
+    return persistence.findWithoutPayload(afterProductId, batchSize).collectList();
+  }
+
+  private Mono<Long> store(List<ProductEntity> batch) {
+    batch.forEach(entity -> entity.setPayload(mapper.entityToPayload(entity)));
+    return persistence.storePayloads(batch)
+      .map(stored -> {
+        backfilled.increment(stored);
+        return (long) stored;
+      });
+  }
+}
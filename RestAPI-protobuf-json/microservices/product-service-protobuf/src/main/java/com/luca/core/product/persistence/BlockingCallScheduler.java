@@ -0,0 +1,160 @@
+package com.luca.core.product.persistence;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Decides on which threads blocking repository calls are executed.
+ *
+ * Modes, selected by "app.persistence.blocking.scheduler":
+ * <ul>
+ *   <li>event-loop: run on the subscribing thread, i.e. the Netty event loop</li>
+ *   <li>bounded-elastic: a dedicated bounded elastic pool</li>
+ *   <li>virtual: one virtual thread per call, requires a Java 21+ runtime</li>
+ * </ul>
+ *
+ * Offloaded calls publish the number of calls waiting for a thread
+ * ("product.persistence.offload.queued") and the time they waited
+ * ("product.persistence.offload.wait"), both tagged with the mode.
+ */
+@Component
+public class BlockingCallScheduler {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BlockingCallScheduler.class);
+
+  private final Scheduler scheduler;
+
+  private final AtomicInteger queued = new AtomicInteger();
+
+  private final AtomicInteger active = new AtomicInteger();
+
+  private final Timer waitTimer;
+
+  @Autowired
+  public BlockingCallScheduler(
+    @Value("${app.persistence.blocking.scheduler:event-loop}") String mode,
+    @Value("${app.persistence.blocking.thread-cap:64}") int threadCap,
+    @Value("${app.persistence.blocking.queue-cap:10000}") int queueCap,
+    MeterRegistry registry) {
+
+    this.scheduler = createScheduler(mode, threadCap, queueCap);
+
+    Gauge.builder("product.persistence.offload.queued", queued, AtomicInteger::get)
+      .description("Blocking persistence calls waiting for a thread")
+      .tag("mode", mode)
+      .register(registry);
+    Gauge.builder("product.persistence.offload.active", active, AtomicInteger::get)
+      .description("Blocking persistence calls currently executing")
+      .tag("mode", mode)
+      .register(registry);
+    this.waitTimer = Timer.builder("product.persistence.offload.wait")
+      .description("Time a blocking persistence call waited before it started executing")
+      .tag("mode", mode)
+      .publishPercentileHistogram()
+      .register(registry);
+
+    LOG.info("Blocking persistence calls are executed in mode: {}", mode);
+  }
+
+  /**
+   * Runs the task on the configured threads; the task counts its round trips against
+   * the request it runs for, see {@link MongoRoundTrips}.
+   */
+  public <T> Mono<T> call(Callable<T> task) {
+    return Mono.deferContextual(context -> offload(MongoRoundTrips.bind(context, task)));
+  }
+
+  public Mono<Void> run(Runnable task) {
+    return call(() -> {
+      task.run();
+      return null;
+    }).then();
+  }
+
+  private <T> Mono<T> offload(Callable<T> task) {
+    if (scheduler == null) {
+      return Mono.fromCallable(task);
+    }
+
+    return Mono.defer(() -> {
+      long enqueuedAt = System.nanoTime();
+      AtomicBoolean started = new AtomicBoolean();
+      queued.incrementAndGet();
+
+      return Mono.fromCallable(() -> {
+          started.set(true);
+          queued.decrementAndGet();
+          waitTimer.record(System.nanoTime() - enqueuedAt, NANOSECONDS);
+          active.incrementAndGet();
+          try {
+            return task.call();
+          } finally {
+            active.decrementAndGet();
+          }
+        })
+        .subscribeOn(scheduler)
+        .doFinally(signal -> {
+          if (started.compareAndSet(false, true)) {
+            queued.decrementAndGet();
+          }
+        });
+    });
+  }
+
+  @PreDestroy
+  public void dispose() {
+    if (scheduler != null) {
+      scheduler.dispose();
+    }
+  }
+
+  private static Scheduler createScheduler(String mode, int threadCap, int queueCap) {
+    switch (mode) {
+      case "event-loop":
+        return null;
+
+      case "bounded-elastic":
+        return Schedulers.newBoundedElastic(threadCap, queueCap, "product-persistence");
+
+      case "virtual":
+        ExecutorService executor = newVirtualThreadPerTaskExecutor();
+        if (executor != null) {
+          return Schedulers.fromExecutorService(executor, "product-persistence-virtual");
+        }
+        LOG.warn("Virtual threads require Java 21+, running on {}; falling back to bounded-elastic",
+          System.getProperty("java.version"));
+        return Schedulers.newBoundedElastic(threadCap, queueCap, "product-persistence");
+
+      default:
+        throw new IllegalArgumentException("Unknown app.persistence.blocking.scheduler: " + mode);
+    }
+  }
+
+  /**
+   * The service is compiled for Java 17, so the Java 21 factory is looked up reflectively.
+   */
+  private static ExecutorService newVirtualThreadPerTaskExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,259 @@
+package com.luca.core.product.persistence;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Runs blocking {@link MongoOperations} calls on the threads chosen by the
+ * {@link BlockingCallScheduler}; by default the Netty event loop, kept as a
+ * baseline for benchmarking against the reactive path.
+ */
+@Component
+@ConditionalOnProperty(name = "app.persistence.mode", havingValue = "blocking")
+public class BlockingProductPersistence implements ProductPersistence {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BlockingProductPersistence.class);
+
+  private final MongoOperations mongoTemplate;
+
+  private final BlockingCallScheduler scheduler;
+
+  private final ProductLayout layout;
+
+  private final CodecRegistry codecs;
+
+  @Autowired
+  public BlockingProductPersistence(MongoOperations mongoTemplate, BlockingCallScheduler scheduler,
+    @Value("${app.persistence.layout:classic}") String layout) {
+    this.mongoTemplate = mongoTemplate;
+    this.scheduler = scheduler;
+    this.layout = ProductLayout.of(layout);
+    this.codecs = ProductEntityCodec.registry(this.layout);
+  }
+
+  @Override
+  public Mono<ProductEntity> findByProductId(int productId) {
+    return scheduler.call(() -> mongoTemplate.execute(ProductEntity.class,
+      collection -> entities(collection).find(Filters.eq(layout.keyField(), productId)).first()));
+  }
+
+  @Override
+  public Mono<Boolean> existsByProductId(int productId) {
+    return scheduler.call(() -> mongoTemplate.execute(ProductEntity.class,
+      collection -> collection.find(Filters.eq(layout.keyField(), productId))
+        .projection(layout.productIdsOnly().getFieldsObject())
+        .first() != null));
+  }
+
+  @Override
+  public Flux<ProductEntity> findByProductIdIn(Collection<Integer> productIds) {
+    return scheduler.call(() -> mongoTemplate.execute(ProductEntity.class,
+        collection -> entities(collection).find(Filters.in(layout.keyField(), productIds)).into(new ArrayList<>())))
+      .flatMapIterable(entities -> entities);
+  }
+
+  @Override
+  public Mono<ProductEntity> insert(ProductEntity entity) {
+    return scheduler.call(() -> {
+      initializeVersion(entity);
+      mongoTemplate.execute(ProductEntity.class, collection -> entities(collection).insertOne(entity));
+      return entity;
+    });
+  }
+
+  @Override
+  public Mono<Boolean> deleteByProductId(int productId) {
+    return scheduler.call(() -> mongoTemplate.execute(ProductEntity.class,
+      collection -> collection.deleteOne(Filters.eq(layout.keyField(), productId)).getDeletedCount() > 0));
+  }
+
+  @Override
+  public Mono<ProductEntity> update(int productId, Map<String, Object> fields, String expectedId, Integer expectedVersion) {
+    Query query = ProductUpdates.query(layout, productId, expectedId, expectedVersion);
+    Update update = ProductUpdates.update(fields);
+    return scheduler.call(() -> mongoTemplate.findAndModify(query, update,
+      FindAndModifyOptions.options().returnNew(true), ProductEntity.class));
+  }
+
+  @Override
+  public Mono<List<ProductInsertStatus>> insertAll(List<ProductEntity> entities) {
+    if (entities.isEmpty()) {
+      return Mono.just(List.of());
+    }
+
+    return scheduler.call(() -> {
+      // Bulk inserts bypass the version initialization of save()
+      entities.forEach(BlockingProductPersistence::initializeVersion);
+      try {
+        mongoTemplate.bulkOps(BulkMode.UNORDERED, ProductEntity.class).insert(entities).execute();
+        return ProductInsertStatus.of(entities.size(), List.of());
+      } catch (BulkOperationException e) {
+        return ProductInsertStatus.of(entities.size(), e.getErrors());
+      }
+    });
+  }
+
+  @Override
+  public Mono<Integer> writeOrdered(List<ProductWrite> writes) {
+    if (writes.isEmpty()) {
+      return Mono.just(-1);
+    }
+
+    return scheduler.call(() -> {
+      BulkOperations bulk = mongoTemplate.bulkOps(BulkMode.ORDERED, ProductEntity.class);
+      int[] writeOfOperation = new int[writes.size() * 2];
+      int operations = 0;
+      for (int i = 0; i < writes.size(); i++) {
+        ProductWrite write = writes.get(i);
+        if (write.isDeleteFirst()) {
+          bulk.remove(Query.query(layout.productId(write.getProductId())));
+          writeOfOperation[operations++] = i;
+        }
+        if (write.getInsert() != null) {
+          initializeVersion(write.getInsert());
+          bulk.insert(write.getInsert());
+          writeOfOperation[operations++] = i;
+        }
+      }
+
+      try {
+        bulk.execute();
+        return -1;
+      } catch (BulkOperationException e) {
+        if (e.getErrors().isEmpty()) {
+          throw e;
+        }
+        return writeOfOperation[e.getErrors().get(0).getIndex()];
+      } catch (DataIntegrityViolationException e) {
+        // MongoOperations reports a write concern error this way, with or without write errors
+        if (!(e.getCause() instanceof MongoBulkWriteException bulkException)) {
+          throw e;
+        }
+        if (!bulkException.getWriteErrors().isEmpty()) {
+          return writeOfOperation[bulkException.getWriteErrors().get(0).getIndex()];
+        }
+        LOG.warn("Ordered bulk write of {} products applied, write concern failed: {}", writes.size(),
+          bulkException.getWriteConcernError().getMessage());
+        return -1;
+      }
+    });
+  }
+
+  @Override
+  public Flux<ProductEntity> findPage(int afterProductId, int limit) {
+    return scheduler.call(() -> mongoTemplate.execute(ProductEntity.class,
+        collection -> entities(collection).find(Filters.gt(layout.keyField(), afterProductId))
+          .sort(Sorts.ascending(layout.keyField()))
+          .limit(limit)
+          .into(new ArrayList<>())))
+      .flatMapIterable(entities -> entities);
+  }
+
+  /**
+   * Iterates a blocking cursor on the bounded elastic scheduler, the subscriber's demand
+   * drives the iteration.
+   */
+  @Override
+  public Flux<ProductEntity> streamAll(int cursorBatchSize) {
+    return Flux.using(
+        () -> mongoTemplate.execute(ProductEntity.class,
+          collection -> entities(collection).find()
+            .sort(Sorts.ascending(layout.keyField()))
+            .batchSize(cursorBatchSize)
+            .cursor()),
+        cursor -> Flux.fromIterable(() -> cursor),
+        MongoCursor::close)
+      .subscribeOn(Schedulers.boundedElastic());
+  }
+
+  /**
+   * Iterates a blocking cursor, subscribers are expected to subscribe on a thread that may block.
+   */
+  @Override
+  public Flux<Integer> findAllProductIds() {
+    return Flux.using(
+        () -> mongoTemplate.stream(layout.productIdsOnly(), Document.class, collectionName()),
+        Flux::fromStream,
+        Stream::close)
+      .map(document -> document.getInteger(layout.keyField()));
+  }
+
+  @Override
+  public Mono<ProductEntity> findPayloadByProductId(int productId) {
+    return scheduler.call(() -> {
+      Document document = mongoTemplate.findOne(StoredPayloads.findQuery(layout, productId), Document.class, collectionName());
+      return document == null ? null : StoredPayloads.toEntity(layout, productId, document);
+    });
+  }
+
+  @Override
+  public Mono<RawBsonDocument> findRawByProductId(int productId) {
+    return scheduler.call(() -> mongoTemplate.execute(ProductEntity.class,
+      collection -> collection.withCodecRegistry(codecs).withDocumentClass(RawBsonDocument.class)
+        .find(Filters.eq(layout.keyField(), productId)).first()));
+  }
+
+  @Override
+  public Flux<ProductEntity> findWithoutPayload(int afterProductId, int limit) {
+    return scheduler.call(() -> mongoTemplate.find(StoredPayloads.withoutPayload(layout, afterProductId, limit), ProductEntity.class))
+      .flatMapIterable(entities -> entities);
+  }
+
+  @Override
+  public Mono<Integer> storePayloads(List<ProductEntity> entities) {
+    if (entities.isEmpty()) {
+      return Mono.just(0);
+    }
+
+    return scheduler.call(() -> {
+      BulkOperations bulk = mongoTemplate.bulkOps(BulkMode.UNORDERED, collectionName());
+      entities.forEach(entity -> bulk.updateOne(StoredPayloads.storeQuery(layout, entity), StoredPayloads.storeUpdate(entity)));
+      return bulk.execute().getModifiedCount();
+    });
+  }
+
+  /**
+   * The collection reading and writing entities with the {@link ProductEntityCodec}.
+   */
+  private MongoCollection<ProductEntity> entities(MongoCollection<Document> collection) {
+    return collection.withCodecRegistry(codecs).withDocumentClass(ProductEntity.class);
+  }
+
+  private String collectionName() {
+    return mongoTemplate.getCollectionName(ProductEntity.class);
+  }
+
+  private static void initializeVersion(ProductEntity entity) {
+    if (entity.getVersion() == null) {
+      entity.setVersion(0);
+    }
+  }
+}
@@ -0,0 +1,69 @@
+package com.luca.core.product.persistence;
+
+import java.util.List;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+
+/**
+ * Maps {@link ProductEntity} to the keyed layout, see {@link ProductLayout#KEYED}:
+ * { _id: productId, oid: ObjectId, version, name, weight, payload }.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.persistence.layout", havingValue = "keyed")
+public class KeyedLayoutConfiguration {
+
+  @Bean
+  public MongoCustomConversions mongoCustomConversions() {
+    return new MongoCustomConversions(List.of(new ToDocument(), new FromDocument()));
+  }
+
+  /**
+   * Generates the ObjectId of a new entity, as the driver only generates a missing _id.
+   */
+  @WritingConverter
+  static final class ToDocument implements Converter<ProductEntity, Document> {
+
+    @Override
+    public Document convert(ProductEntity entity) {
+      if (entity.getId() == null) {
+        entity.setId(new ObjectId().toHexString());
+      }
+
+      Document document = new Document("_id", entity.getProductId())
+        .append("oid", new ObjectId(entity.getId()))
+        .append("version", entity.getVersion());
+      if (entity.getName() != null) {
+        document.append("name", entity.getName());
+      }
+      document.append("weight", entity.getWeight());
+      if (entity.getPayload() != null) {
+        document.append("payload", new Binary(entity.getPayload()));
+      }
+      return document;
+    }
+  }
+
+  @ReadingConverter
+  static final class FromDocument implements Converter<Document, ProductEntity> {
+
+    @Override
+    public ProductEntity convert(Document document) {
+      ProductEntity entity = new ProductEntity(
+        document.getInteger("_id"), document.getString("name"), document.getInteger("weight", 0));
+      ObjectId id = document.getObjectId("oid");
+      entity.setId(id == null ? null : id.toHexString());
+      entity.setVersion(document.getInteger("version"));
+      Binary payload = document.get("payload", Binary.class);
+      entity.setPayload(payload == null ? null : payload.getData());
+      return entity;
+    }
+  }
+}
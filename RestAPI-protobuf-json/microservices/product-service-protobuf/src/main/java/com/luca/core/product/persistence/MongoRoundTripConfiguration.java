@@ -0,0 +1,21 @@
+package com.luca.core.product.persistence;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Installs the {@link MongoRoundTrips} counter on both the blocking and the reactive client.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.persistence.round-trips.enabled", havingValue = "true", matchIfMissing = true)
+public class MongoRoundTripConfiguration {
+
+  @Bean
+  public MongoClientSettingsBuilderCustomizer mongoRoundTripCustomizer() {
+    return builder -> builder
+      .contextProvider(new MongoRoundTrips.ContextProvider())
+      .addCommandListener(new MongoRoundTrips.Listener());
+  }
+}
@@ -0,0 +1,133 @@
+package com.luca.core.product.persistence;
+
+import com.mongodb.RequestContext;
+import com.mongodb.client.SynchronousContextProvider;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.reactivestreams.client.ReactiveContextProvider;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.reactivestreams.Subscriber;
+import reactor.core.CoreSubscriber;
+import reactor.util.context.ContextView;
+
+/**
+ * Counts the commands sent to MongoDB on behalf of one request.
+ *
+ * A request is tracked by writing an {@link AtomicInteger} under {@link #CONTEXT_KEY} into
+ * the Reactor context of its processing. The reactive driver reads it from the subscriber
+ * of each operation; blocking calls see it while run by {@link #bind}. Every command
+ * started with a tracked context increments the counter, getMore commands of cursors
+ * included. Work detached from the request, e.g. write-behind flushes, is not counted.
+ */
+public final class MongoRoundTrips {
+
+  public static final String CONTEXT_KEY = MongoRoundTrips.class.getName();
+
+  private static final ThreadLocal<AtomicInteger> CURRENT = new ThreadLocal<>();
+
+  private MongoRoundTrips() {}
+
+  /**
+   * Makes the counter in the context, if any, visible to blocking driver calls made by the task.
+   */
+  static <T> Callable<T> bind(ContextView context, Callable<T> task) {
+    AtomicInteger counter = context.getOrDefault(CONTEXT_KEY, null);
+    if (counter == null) {
+      return task;
+    }
+
+    return () -> {
+      AtomicInteger previous = CURRENT.get();
+      CURRENT.set(counter);
+      try {
+        return task.call();
+      } finally {
+        CURRENT.set(previous);
+      }
+    };
+  }
+
+  /**
+   * Hands the counter of the calling request to the driver, both for the blocking and the
+   * reactive client.
+   */
+  static final class ContextProvider implements SynchronousContextProvider, ReactiveContextProvider {
+
+    @Override
+    public RequestContext getContext() {
+      AtomicInteger counter = CURRENT.get();
+      return counter == null ? null : new CounterContext(counter);
+    }
+
+    @Override
+    public RequestContext getContext(Subscriber<?> subscriber) {
+      if (!(subscriber instanceof CoreSubscriber<?> coreSubscriber)) {
+        return null;
+      }
+      AtomicInteger counter = coreSubscriber.currentContext().getOrDefault(CONTEXT_KEY, null);
+      return counter == null ? null : new CounterContext(counter);
+    }
+  }
+
+  static final class Listener implements CommandListener {
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+      RequestContext context = event.getRequestContext();
+      if (context != null && context.hasKey(CONTEXT_KEY)) {
+        context.<AtomicInteger>get(CONTEXT_KEY).incrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Read-only request context holding just the counter.
+   */
+  private static final class CounterContext implements RequestContext {
+
+    private final AtomicInteger counter;
+
+    CounterContext(AtomicInteger counter) {
+      this.counter = counter;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key) {
+      return CONTEXT_KEY.equals(key) ? (T) counter : null;
+    }
+
+    @Override
+    public boolean hasKey(Object key) {
+      return CONTEXT_KEY.equals(key);
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return false;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void delete(Object key) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int size() {
+      return 1;
+    }
+
+    @Override
+    public Stream<Map.Entry<Object, Object>> stream() {
+      return Stream.of(Map.entry(CONTEXT_KEY, counter));
+    }
+  }
+}
@@ -5,7 +5,11 @@ import org.springframework.data.annotation.Version;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
-@Document(collection = "products")
+/**
+ * Stored in the collection named by "app.persistence.collection", keyed as selected by
+ * "app.persistence.layout", see {@link ProductLayout}.
+ */
+@Document(collection = "#{@environment.getProperty('app.persistence.collection', 'products')}")
 public class ProductEntity {
 
   @Id private String id;
@@ -18,6 +22,12 @@ public class ProductEntity {
   private String name;
   private int weight;
 
+  /**
+   * Encoded ProductProto.Product without serviceAddress, stored when
+   * "app.persistence.stored-payload.enabled"; absent until written or backfilled.
+   */
+  private byte[] payload;
+
   public ProductEntity() {}
 
   public ProductEntity(int productId, String name, int weight) {
@@ -65,4 +75,12 @@ public class ProductEntity {
   public void setWeight(int weight) {
     this.weight = weight;
   }
+
+  public byte[] getPayload() {
+    return payload;
+  }
+
+  public void setPayload(byte[] payload) {
+    this.payload = payload;
+  }
 }
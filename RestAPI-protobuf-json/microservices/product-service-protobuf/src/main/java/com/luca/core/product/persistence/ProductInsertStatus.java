@@ -0,0 +1,30 @@
+package com.luca.core.product.persistence;
+
+import com.mongodb.bulk.BulkWriteError;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of one product of a bulk insert.
+ */
+public enum ProductInsertStatus {
+  CREATED,
+  DUPLICATE,
+  FAILED;
+
+  private static final int DUPLICATE_KEY = 11000;
+
+  /**
+   * @param count number of inserted documents
+   * @param errors write errors of an unordered bulk write, indexed by document
+   * @return the status of each document, in insertion order
+   */
+  static List<ProductInsertStatus> of(int count, List<BulkWriteError> errors) {
+    List<ProductInsertStatus> statuses = new ArrayList<>(Collections.nCopies(count, CREATED));
+    for (BulkWriteError error : errors) {
+      statuses.set(error.getIndex(), error.getCode() == DUPLICATE_KEY ? DUPLICATE : FAILED);
+    }
+    return statuses;
+  }
+}
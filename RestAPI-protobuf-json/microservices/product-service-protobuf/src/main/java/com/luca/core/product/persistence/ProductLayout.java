@@ -0,0 +1,90 @@
+package com.luca.core.product.persistence;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+/**
+ * How product documents are keyed, selected by "app.persistence.layout".
+ *
+ * <ul>
+ *   <li>classic: a generated ObjectId is the _id, productId a field with a unique index</li>
+ *   <li>keyed: productId is the _id, so lookups and inserts maintain only the _id index.
+ *       The generated ObjectId, which entity tags are derived from, is kept in the
+ *       unindexed field "oid", see {@link KeyedLayoutConfiguration}</li>
+ * </ul>
+ *
+ * Queries by productId or document id use the field names of the active layout.
+ */
+public enum ProductLayout {
+
+  CLASSIC("productId", "_id"),
+
+  KEYED("_id", "oid");
+
+  private final String keyField;
+
+  private final String idField;
+
+  ProductLayout(String keyField, String idField) {
+    this.keyField = keyField;
+    this.idField = idField;
+  }
+
+  public static ProductLayout of(String name) {
+    switch (name) {
+      case "classic":
+        return CLASSIC;
+      case "keyed":
+        return KEYED;
+      default:
+        throw new IllegalArgumentException("Unknown app.persistence.layout: " + name);
+    }
+  }
+
+  /**
+   * The field holding the productId.
+   */
+  public String keyField() {
+    return keyField;
+  }
+
+  /**
+   * The field holding the generated ObjectId of {@link ProductEntity#getId}.
+   */
+  public String idField() {
+    return idField;
+  }
+
+  Criteria productId(int productId) {
+    return Criteria.where(keyField).is(productId);
+  }
+
+  Criteria productIdAfter(int productId) {
+    return Criteria.where(keyField).gt(productId);
+  }
+
+  /**
+   * An id that is no valid ObjectId matches no document.
+   */
+  Criteria documentId(String id) {
+    return Criteria.where(idField).is(ObjectId.isValid(id) ? new ObjectId(id) : id);
+  }
+
+  Sort byProductId() {
+    return Sort.by(keyField);
+  }
+
+  /**
+   * Selects all documents, returning only the productId field.
+   */
+  Query productIdsOnly() {
+    Query query = new Query();
+    query.fields().include(keyField);
+    if (this == CLASSIC) {
+      query.fields().exclude("_id");
+    }
+    return query;
+  }
+}
@@ -1,9 +1,13 @@
 package com.luca.core.product.persistence;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.PagingAndSortingRepository;
 
 public interface ProductRepository extends PagingAndSortingRepository<ProductEntity, String>, CrudRepository<ProductEntity, String> {
   Optional<ProductEntity> findByProductId(int productId);
+
+  List<ProductEntity> findByProductIdIn(Collection<Integer> productIds);
 }
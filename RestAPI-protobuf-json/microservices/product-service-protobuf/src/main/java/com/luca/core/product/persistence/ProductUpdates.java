@@ -0,0 +1,38 @@
+package com.luca.core.product.persistence;
+
+import java.util.Map;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+/**
+ * Query and update documents of {@link ProductPersistence#update}.
+ */
+final class ProductUpdates {
+
+  private ProductUpdates() {}
+
+  static Query query(ProductLayout layout, int productId, String expectedId, Integer expectedVersion) {
+    Query query = Query.query(layout.productId(productId));
+    if (expectedId != null) {
+      query.addCriteria(layout.documentId(expectedId)).addCriteria(Criteria.where("version").is(expectedVersion));
+    }
+    return query;
+  }
+
+  /**
+   * findAndModify increments the @Version of the entity, unless the update sets it. The
+   * stored payload no longer matches the fields, it is unset and rebuilt by the backfill.
+   */
+  static Update update(Map<String, Object> fields) {
+    Update update = new Update().unset("payload");
+    fields.forEach((field, value) -> {
+      if (value == null) {
+        update.unset(field);
+      } else {
+        update.set(field, value);
+      }
+    });
+    return update;
+  }
+}
@@ -0,0 +1,51 @@
+package com.luca.core.product.persistence;
+
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+/**
+ * Queries and updates of the stored payload, see {@link ProductEntity#getPayload}.
+ *
+ * Payload reads and writes go to the collection as raw documents, bypassing the mapping
+ * converter; writes by collection name also leave the @Version untouched.
+ */
+final class StoredPayloads {
+
+  private StoredPayloads() {}
+
+  static Query findQuery(ProductLayout layout, int productId) {
+    Query query = Query.query(layout.productId(productId));
+    query.fields().include(layout.idField(), "version", "payload");
+    return query;
+  }
+
+  static ProductEntity toEntity(ProductLayout layout, int productId, Document document) {
+    ProductEntity entity = new ProductEntity();
+    entity.setId(document.getObjectId(layout.idField()).toHexString());
+    entity.setVersion(document.getInteger("version"));
+    entity.setProductId(productId);
+    Binary payload = document.get("payload", Binary.class);
+    entity.setPayload(payload == null ? null : payload.getData());
+    return entity;
+  }
+
+  static Query withoutPayload(ProductLayout layout, int afterProductId, int limit) {
+    return Query.query(layout.productIdAfter(afterProductId).and("payload").exists(false))
+      .with(layout.byProductId())
+      .limit(limit);
+  }
+
+  /**
+   * Matches the document only while it still has the entity's id and @Version.
+   */
+  static Query storeQuery(ProductLayout layout, ProductEntity entity) {
+    return Query.query(layout.documentId(entity.getId()).and("version").is(entity.getVersion()));
+  }
+
+  static Update storeUpdate(ProductEntity entity) {
+    return new Update().set("payload", new Binary(entity.getPayload()));
+  }
+}
@@ -0,0 +1,69 @@
+package com.luca.core.product.web.codec;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Message;
+import java.io.IOException;
+import java.util.Map;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.codec.protobuf.ProtobufEncoder;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link ProtobufEncoder} that writes each message straight into a buffer of the response's
+ * factory, pooled direct Netty buffers on the server. The default encoder serializes into a
+ * growing heap array and wraps it, which Netty then copies to the socket.
+ *
+ * The buffer is allocated with the exact serialized size, computed once and cached by the
+ * message, and filled by a CodedOutputStream over its NIO view. Like the default encoder,
+ * messages of a Flux are written length-delimited and single values are not; media types are
+ * inherited.
+ */
+public class PooledProtobufEncoder extends ProtobufEncoder {
+
+  @Override
+  public Flux<DataBuffer> encode(Publisher<? extends Message> inputStream, DataBufferFactory bufferFactory,
+    ResolvableType elementType, MimeType mimeType, Map<String, Object> hints) {
+
+    boolean delimited = !(inputStream instanceof Mono);
+    return Flux.from(inputStream).map(message -> encode(message, bufferFactory, delimited));
+  }
+
+  @Override
+  public DataBuffer encodeValue(Message message, DataBufferFactory bufferFactory, ResolvableType valueType,
+    MimeType mimeType, Map<String, Object> hints) {
+
+    return encode(message, bufferFactory, false);
+  }
+
+  private static DataBuffer encode(Message message, DataBufferFactory bufferFactory, boolean delimited) {
+    int size = message.getSerializedSize();
+    int length = delimited ? CodedOutputStream.computeUInt32SizeNoTag(size) + size : size;
+    DataBuffer buffer = bufferFactory.allocateBuffer(length);
+    boolean release = true;
+    try {
+      try (DataBuffer.ByteBufferIterator buffers = buffer.writableByteBuffers()) {
+        CodedOutputStream output = CodedOutputStream.newInstance(buffers.next());
+        if (delimited) {
+          output.writeUInt32NoTag(size);
+        }
+        message.writeTo(output);
+        output.flush();
+      }
+      buffer.writePosition(buffer.writePosition() + length);
+      release = false;
+      return buffer;
+    } catch (IOException ex) {
+      throw new IllegalStateException("Unexpected I/O error while writing to data buffer", ex);
+    } finally {
+      if (release) {
+        DataBufferUtils.release(buffer);
+      }
+    }
+  }
+}
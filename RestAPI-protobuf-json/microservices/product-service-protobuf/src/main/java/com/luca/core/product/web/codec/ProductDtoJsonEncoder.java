@@ -0,0 +1,60 @@
+package com.luca.core.product.web.codec;
+
+import com.google.protobuf.Message;
+import com.luca.core.product.mapper.ProductDtoMapper;
+import java.util.Map;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.AbstractEncoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Writes single Protobuf messages as the Jackson DTOs of product-service-json, see
+ * {@link ProductDtoMapper}. Messages without a DTO, ErrorInfo and ProductImportSummary, are
+ * printed by the fallback with all their fields, as Jackson would.
+ */
+public class ProductDtoJsonEncoder extends AbstractEncoder<Message> {
+
+  private final ProductDtoMapper mapper;
+
+  private final Jackson2JsonEncoder jackson;
+
+  private final ProtobufJsonEncoder fallback;
+
+  public ProductDtoJsonEncoder(ProductDtoMapper mapper, Jackson2JsonEncoder jackson, ProtobufJsonEncoder fallback) {
+    super(ProductFormat.JSON.mediaType());
+    this.mapper = mapper;
+    this.jackson = jackson;
+    this.fallback = fallback;
+  }
+
+  @Override
+  public boolean canEncode(ResolvableType elementType, MimeType mimeType) {
+    return Message.class.isAssignableFrom(elementType.toClass()) && super.canEncode(elementType, mimeType);
+  }
+
+  @Override
+  public Flux<DataBuffer> encode(Publisher<? extends Message> inputStream, DataBufferFactory bufferFactory,
+    ResolvableType elementType, MimeType mimeType, Map<String, Object> hints) {
+
+    return Mono.from(inputStream)
+      .map(message -> encodeValue(message, bufferFactory, elementType, mimeType, hints))
+      .flux();
+  }
+
+  @Override
+  public DataBuffer encodeValue(Message message, DataBufferFactory bufferFactory, ResolvableType valueType,
+    MimeType mimeType, Map<String, Object> hints) {
+
+    Object dto = mapper.toDto(message);
+    if (dto == null) {
+      return fallback.encodeValue(message, bufferFactory, valueType, mimeType, hints);
+    }
+    return jackson.encodeValue(dto, bufferFactory, ResolvableType.forInstance(dto), mimeType, hints);
+  }
+}
@@ -0,0 +1,91 @@
+package com.luca.core.product.web.codec;
+
+import java.util.List;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.util.MimeTypeUtils;
+
+/**
+ * Wire formats served on the same endpoints in the unified mode, see
+ * {@link UnifiedFormatConfiguration}.
+ */
+public enum ProductFormat {
+
+  /**
+   * Binary Protobuf.
+   */
+  PROTOBUF("protobuf", new MediaType("application", "x-protobuf")),
+
+  /**
+   * Jackson DTOs, the representation of product-service-json.
+   */
+  JSON("json", MediaType.APPLICATION_JSON),
+
+  /**
+   * The canonical JSON mapping of the Protobuf messages, printed by JsonFormat.
+   */
+  PROTOBUF_JSON("protobuf-json", new MediaType("application", "x-protobuf+json"));
+
+  private final String tag;
+
+  private final MediaType mediaType;
+
+  ProductFormat(String tag, MediaType mediaType) {
+    this.tag = tag;
+    this.mediaType = mediaType;
+  }
+
+  /**
+   * Value of the "format" tag of the metrics.
+   */
+  public String tag() {
+    return tag;
+  }
+
+  public MediaType mediaType() {
+    return mediaType;
+  }
+
+  /**
+   * The format of a media type, null if none matches.
+   */
+  public static ProductFormat of(MediaType mediaType) {
+    if (mediaType != null) {
+      for (ProductFormat format : values()) {
+        if (format.mediaType.equalsTypeAndSubtype(mediaType)) {
+          return format;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * The preferred format acceptable to the client, as the handler would negotiate it: by
+   * quality and specificity of the Accept header, in declaration order for wildcards.
+   *
+   * @param accept the Accept header, may be null
+   * @return the format, null if none is acceptable
+   */
+  public static ProductFormat negotiate(String accept) {
+    if (accept == null || accept.isBlank()) {
+      return PROTOBUF;
+    }
+
+    List<MediaType> acceptable;
+    try {
+      acceptable = MediaType.parseMediaTypes(accept);
+    } catch (InvalidMediaTypeException e) {
+      return null;
+    }
+    MimeTypeUtils.sortBySpecificity(acceptable);
+    for (MediaType mediaType : acceptable) {
+      for (ProductFormat format : values()) {
+        if (mediaType.includes(format.mediaType)) {
+          return format;
+        }
+      }
+    }
+    return null;
+  }
+}
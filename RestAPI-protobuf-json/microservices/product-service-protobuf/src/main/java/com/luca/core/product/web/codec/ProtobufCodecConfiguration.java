@@ -0,0 +1,55 @@
+package com.luca.core.product.web.codec;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.codec.protobuf.ProtobufEncoder;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+/**
+ * Replaces the default Protobuf decoder with the {@link ZeroCopyProtobufDecoder} when
+ * "app.codec.zero-copy-decoder.enabled", its max message size is
+ * "spring.codec.max-in-memory-size" as for the default one, and the default encoder with
+ * the {@link PooledProtobufEncoder} when "app.codec.pooled-encoder.enabled". In the unified
+ * mode the JSON codecs of {@link UnifiedFormats} are added.
+ */
+@Configuration
+public class ProtobufCodecConfiguration implements WebFluxConfigurer {
+
+  private final boolean zeroCopyDecoder;
+
+  private final boolean pooledEncoder;
+
+  private final UnifiedFormats unifiedFormats;
+
+  @Autowired
+  public ProtobufCodecConfiguration(
+    @Value("${app.codec.zero-copy-decoder.enabled:true}") boolean zeroCopyDecoder,
+    @Value("${app.codec.pooled-encoder.enabled:true}") boolean pooledEncoder,
+    ObjectProvider<UnifiedFormats> unifiedFormats) {
+
+    this(zeroCopyDecoder, pooledEncoder, unifiedFormats.getIfAvailable());
+  }
+
+  public ProtobufCodecConfiguration(boolean zeroCopyDecoder, boolean pooledEncoder, UnifiedFormats unifiedFormats) {
+    this.zeroCopyDecoder = zeroCopyDecoder;
+    this.pooledEncoder = pooledEncoder;
+    this.unifiedFormats = unifiedFormats;
+  }
+
+  @Override
+  public void configureHttpMessageCodecs(ServerCodecConfigurer configurer) {
+    if (zeroCopyDecoder) {
+      configurer.defaultCodecs().protobufDecoder(new ZeroCopyProtobufDecoder());
+    }
+
+    ProtobufEncoder encoder = pooledEncoder ? new PooledProtobufEncoder() : new ProtobufEncoder();
+    if (unifiedFormats != null) {
+      unifiedFormats.configure(configurer, encoder);
+    } else if (pooledEncoder) {
+      configurer.defaultCodecs().protobufEncoder(encoder);
+    }
+  }
+}
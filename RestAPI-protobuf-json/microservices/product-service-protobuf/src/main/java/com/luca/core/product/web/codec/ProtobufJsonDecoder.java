@@ -0,0 +1,47 @@
+package com.luca.core.product.web.codec;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.util.JsonFormat;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.AbstractDataBufferDecoder;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.util.MimeType;
+
+/**
+ * Parses request bodies of both JSON formats into Protobuf messages with JsonFormat. The
+ * Jackson DTOs of product-service-json use the same field names, so their bodies parse as
+ * well; unknown fields are ignored.
+ */
+public class ProtobufJsonDecoder extends AbstractDataBufferDecoder<Message> {
+
+  private final JsonFormat.Parser parser = JsonFormat.parser().ignoringUnknownFields();
+
+  public ProtobufJsonDecoder() {
+    super(ProductFormat.JSON.mediaType(), ProductFormat.PROTOBUF_JSON.mediaType());
+  }
+
+  @Override
+  public boolean canDecode(ResolvableType elementType, MimeType mimeType) {
+    return Message.class.isAssignableFrom(elementType.toClass()) && super.canDecode(elementType, mimeType);
+  }
+
+  @Override
+  public Message decode(DataBuffer dataBuffer, ResolvableType targetType, MimeType mimeType,
+    Map<String, Object> hints) throws DecodingException {
+
+    try {
+      Message.Builder builder = ZeroCopyProtobufDecoder.defaultInstance(targetType.toClass()).newBuilderForType();
+      parser.merge(dataBuffer.toString(StandardCharsets.UTF_8), builder);
+      return builder.build();
+    } catch (InvalidProtocolBufferException e) {
+      throw new DecodingException("Could not parse JSON as Protobuf message: " + e.getMessage(), e);
+    } finally {
+      DataBufferUtils.release(dataBuffer);
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package com.luca.core.product.web.codec;
+
+import com.google.protobuf.Message;
+import com.google.protobuf.util.JsonFormat;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.AbstractEncoder;
+import org.springframework.core.codec.EncodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Prints single Protobuf messages with JsonFormat, in the canonical JSON mapping of proto3.
+ */
+public class ProtobufJsonEncoder extends AbstractEncoder<Message> {
+
+  private final JsonFormat.Printer printer;
+
+  public ProtobufJsonEncoder(JsonFormat.Printer printer, MimeType... mimeTypes) {
+    super(mimeTypes);
+    this.printer = printer;
+  }
+
+  @Override
+  public boolean canEncode(ResolvableType elementType, MimeType mimeType) {
+    return Message.class.isAssignableFrom(elementType.toClass()) && super.canEncode(elementType, mimeType);
+  }
+
+  @Override
+  public Flux<DataBuffer> encode(Publisher<? extends Message> inputStream, DataBufferFactory bufferFactory,
+    ResolvableType elementType, MimeType mimeType, Map<String, Object> hints) {
+
+    return Mono.from(inputStream)
+      .map(message -> encodeValue(message, bufferFactory, elementType, mimeType, hints))
+      .flux();
+  }
+
+  @Override
+  public DataBuffer encodeValue(Message message, DataBufferFactory bufferFactory, ResolvableType valueType,
+    MimeType mimeType, Map<String, Object> hints) {
+
+    DataBuffer buffer = bufferFactory.allocateBuffer(message.getSerializedSize() * 2 + 16);
+    boolean release = true;
+    try {
+      Writer writer = new OutputStreamWriter(buffer.asOutputStream(), StandardCharsets.UTF_8);
+      printer.appendTo(message, writer);
+      writer.flush();
+      release = false;
+      return buffer;
+    } catch (IOException ex) {
+      throw new EncodingException("Could not print Protobuf message as JSON: " + ex.getMessage(), ex);
+    } finally {
+      if (release) {
+        DataBufferUtils.release(buffer);
+      }
+    }
+  }
+}
@@ -0,0 +1,87 @@
+package com.luca.core.product.web.codec;
+
+import io.micrometer.core.instrument.Timer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Encoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.HttpMessageEncoder;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Records the time the delegate takes to encode each single value. Streamed values are
+ * passed through untimed, as some encoders frame them differently.
+ */
+public class TimedEncoder<T> implements HttpMessageEncoder<T> {
+
+  private final Encoder<T> delegate;
+
+  private final Timer timer;
+
+  public TimedEncoder(Encoder<T> delegate, Timer timer) {
+    this.delegate = delegate;
+    this.timer = timer;
+  }
+
+  @Override
+  public boolean canEncode(ResolvableType elementType, MimeType mimeType) {
+    return delegate.canEncode(elementType, mimeType);
+  }
+
+  @Override
+  public Flux<DataBuffer> encode(Publisher<? extends T> inputStream, DataBufferFactory bufferFactory,
+    ResolvableType elementType, MimeType mimeType, Map<String, Object> hints) {
+
+    if (inputStream instanceof Mono) {
+      return Mono.from(inputStream)
+        .map(value -> encodeValue(value, bufferFactory, elementType, mimeType, hints))
+        .flux();
+    }
+    return delegate.encode(inputStream, bufferFactory, elementType, mimeType, hints);
+  }
+
+  @Override
+  public DataBuffer encodeValue(T value, DataBufferFactory bufferFactory, ResolvableType valueType,
+    MimeType mimeType, Map<String, Object> hints) {
+
+    long startedAt = System.nanoTime();
+    try {
+      return delegate.encodeValue(value, bufferFactory, valueType, mimeType, hints);
+    } finally {
+      timer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  @Override
+  public List<MimeType> getEncodableMimeTypes() {
+    return delegate.getEncodableMimeTypes();
+  }
+
+  @Override
+  public List<MimeType> getEncodableMimeTypes(ResolvableType elementType) {
+    return delegate.getEncodableMimeTypes(elementType);
+  }
+
+  @Override
+  public List<MediaType> getStreamingMediaTypes() {
+    return delegate instanceof HttpMessageEncoder<?> encoder ? encoder.getStreamingMediaTypes() : List.of();
+  }
+
+  @Override
+  public Map<String, Object> getEncodeHints(ResolvableType actualType, ResolvableType elementType,
+    MediaType mediaType, ServerHttpRequest request, ServerHttpResponse response) {
+
+    return delegate instanceof HttpMessageEncoder<T> encoder
+      ? encoder.getEncodeHints(actualType, elementType, mediaType, request, response)
+      : Map.of();
+  }
+}
@@ -0,0 +1,40 @@
+package com.luca.core.product.web.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.luca.core.product.mapper.ProductDtoMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.web.reactive.WebFluxRegistrations;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.result.method.annotation.RequestMappingHandlerMapping;
+
+/**
+ * The unified mode: one instance serves every {@link ProductFormat} on the same endpoints,
+ * negotiated by Accept and Content-Type, instead of one service per wire format.
+ *
+ * Requests are counted by format in "product.format.requests", see
+ * {@link com.luca.core.product.web.filters.FormatMetricsFilter}, and encode times recorded in
+ * "product.format.encode". Streaming endpoints stay Protobuf only.
+ *
+ * Enabled by "app.formats.unified.enabled".
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.formats.unified.enabled", havingValue = "true")
+public class UnifiedFormatConfiguration {
+
+  @Bean
+  public UnifiedFormats unifiedFormats(ProductDtoMapper mapper, ObjectMapper objectMapper, MeterRegistry registry) {
+    return new UnifiedFormats(mapper, objectMapper, registry);
+  }
+
+  @Bean
+  public WebFluxRegistrations unifiedFormatRegistrations() {
+    return new WebFluxRegistrations() {
+      @Override
+      public RequestMappingHandlerMapping getRequestMappingHandlerMapping() {
+        return new UnifiedFormatHandlerMapping();
+      }
+    };
+  }
+}
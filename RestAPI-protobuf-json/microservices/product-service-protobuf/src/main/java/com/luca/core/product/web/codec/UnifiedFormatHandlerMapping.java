@@ -0,0 +1,50 @@
+package com.luca.core.product.web.codec;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Set;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.result.method.RequestMappingInfo;
+import org.springframework.web.reactive.result.method.annotation.RequestMappingHandlerMapping;
+import reactor.core.publisher.Flux;
+
+/**
+ * Widens the mappings that produce or consume only "application/x-protobuf" to every
+ * {@link ProductFormat}, so the formats are negotiated on the same endpoints. Mappings that
+ * stream length-delimited messages, with a Flux body or return value, stay Protobuf only.
+ *
+ * The widening is done here rather than in the annotations: a mapping producing a format
+ * without an encoder fails with 500 instead of 406 when the unified mode is off.
+ */
+public class UnifiedFormatHandlerMapping extends RequestMappingHandlerMapping {
+
+  private static final String[] FORMATS = Arrays.stream(ProductFormat.values())
+    .map(format -> format.mediaType().toString())
+    .toArray(String[]::new);
+
+  @Override
+  protected RequestMappingInfo getMappingForMethod(Method method, Class<?> handlerType) {
+    RequestMappingInfo info = super.getMappingForMethod(method, handlerType);
+    if (info == null || streams(method)) {
+      return info;
+    }
+
+    RequestMappingInfo.Builder builder = info.mutate();
+    if (protobufOnly(info.getProducesCondition().getProducibleMediaTypes())) {
+      builder.produces(FORMATS);
+    }
+    if (protobufOnly(info.getConsumesCondition().getConsumableMediaTypes())) {
+      builder.consumes(FORMATS);
+    }
+    return builder.build();
+  }
+
+  private static boolean streams(Method method) {
+    return Flux.class.isAssignableFrom(method.getReturnType())
+      || Arrays.stream(method.getParameterTypes()).anyMatch(Flux.class::isAssignableFrom);
+  }
+
+  private static boolean protobufOnly(Set<MediaType> mediaTypes) {
+    return mediaTypes.size() == 1 && mediaTypes.contains(ProductFormat.PROTOBUF.mediaType());
+  }
+}
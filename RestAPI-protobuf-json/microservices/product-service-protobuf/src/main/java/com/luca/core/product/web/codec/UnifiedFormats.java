@@ -0,0 +1,94 @@
+package com.luca.core.product.web.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.protobuf.Message;
+import com.google.protobuf.util.JsonFormat;
+import com.luca.core.product.mapper.ProductDtoMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Encoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.codec.protobuf.ProtobufEncoder;
+import org.springframework.http.codec.protobuf.ProtobufHttpMessageWriter;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+
+/**
+ * The codecs of the unified mode, see {@link UnifiedFormatConfiguration}. Every encoder, and
+ * every body rendered by the service itself, is timed by "product.format.encode", tagged with
+ * the format.
+ */
+public class UnifiedFormats {
+
+  private final Map<ProductFormat, Timer> timers = new EnumMap<>(ProductFormat.class);
+
+  private final Map<ProductFormat, Encoder<Message>> jsonEncoders = new EnumMap<>(ProductFormat.class);
+
+  public UnifiedFormats(ProductDtoMapper mapper, ObjectMapper objectMapper, MeterRegistry registry) {
+    for (ProductFormat format : ProductFormat.values()) {
+      timers.put(format, Timer.builder("product.format.encode")
+        .description("Time to encode a response body")
+        .tag("format", format.tag())
+        .register(registry));
+    }
+
+    ProtobufJsonEncoder withAllFields = new ProtobufJsonEncoder(
+      JsonFormat.printer().alwaysPrintFieldsWithNoPresence().omittingInsignificantWhitespace(),
+      ProductFormat.JSON.mediaType());
+    jsonEncoders.put(ProductFormat.JSON,
+      new ProductDtoJsonEncoder(mapper, new Jackson2JsonEncoder(objectMapper), withAllFields));
+    jsonEncoders.put(ProductFormat.PROTOBUF_JSON,
+      new ProtobufJsonEncoder(JsonFormat.printer().omittingInsignificantWhitespace(), ProductFormat.PROTOBUF_JSON.mediaType()));
+  }
+
+  /**
+   * Registers the JSON codecs ahead of Jackson, which would otherwise claim Protobuf messages,
+   * and the timed Protobuf encoder ahead of the default one. The default codecs only take a
+   * ProtobufEncoder, so the timed one gets its own writer.
+   */
+  public void configure(ServerCodecConfigurer configurer, ProtobufEncoder protobufEncoder) {
+    configurer.defaultCodecs().protobufEncoder(protobufEncoder);
+    configurer.customCodecs().register(new ProtobufHttpMessageWriter(timed(ProductFormat.PROTOBUF, protobufEncoder)));
+    jsonEncoders.forEach((format, encoder) -> configurer.customCodecs().register(timed(format, encoder)));
+    configurer.customCodecs().registerWithDefaultConfig(new ProtobufJsonDecoder());
+  }
+
+  /**
+   * Renders a response body in the format, timed as any encoder.
+   *
+   * @param body builds and encodes the body, see {@link #toJson}
+   */
+  public byte[] render(ProductFormat format, Supplier<byte[]> body) {
+    return timers.get(format).record(body);
+  }
+
+  /**
+   * Encodes a message in one of the JSON formats, untimed.
+   */
+  public byte[] toJson(ProductFormat format, Message message) {
+    Encoder<Message> encoder = jsonEncoders.get(format);
+    if (encoder == null) {
+      throw new IllegalArgumentException("Not a JSON format: " + format);
+    }
+
+    DataBuffer buffer = encoder.encodeValue(message, DefaultDataBufferFactory.sharedInstance,
+      ResolvableType.forInstance(message), format.mediaType(), Map.of());
+    try {
+      byte[] bytes = new byte[buffer.readableByteCount()];
+      buffer.read(bytes);
+      return bytes;
+    } finally {
+      DataBufferUtils.release(buffer);
+    }
+  }
+
+  private Encoder<Message> timed(ProductFormat format, Encoder<Message> encoder) {
+    return new TimedEncoder<>(encoder, timers.get(format));
+  }
+}
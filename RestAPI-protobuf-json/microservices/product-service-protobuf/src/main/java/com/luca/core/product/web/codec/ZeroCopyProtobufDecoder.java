@@ -0,0 +1,106 @@
+package com.luca.core.product.web.codec;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.ExtensionRegistry;
+import com.google.protobuf.Message;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.codec.protobuf.ProtobufDecoder;
+import org.springframework.util.MimeType;
+
+/**
+ * {@link ProtobufDecoder} that parses a single message without the heap copy of the whole
+ * body the default decoder makes per request.
+ *
+ * Heap bodies are parsed in place. Direct bodies, usually pooled Netty buffers, up to
+ * SCRATCH_BYTES are read into an array reused per thread and parsed from there: protobuf
+ * copies every string of a direct buffer into a temporary array, which allocates more than
+ * the copy it saves. Larger direct bodies are parsed in place from their NIO views.
+ *
+ * The body is still joined up to the max message size, which fails as soon as it is
+ * exceeded; Netty joins chunks into a composite buffer without copying. Messages are built
+ * by the type's parser, looked up once per type. Delimited message streams are decoded by
+ * the inherited implementation.
+ */
+public class ZeroCopyProtobufDecoder extends ProtobufDecoder {
+
+  static final int SCRATCH_BYTES = 64 * 1024;
+
+  private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[SCRATCH_BYTES]);
+
+  private static final ConcurrentMap<Class<?>, Message> DEFAULT_INSTANCES = new ConcurrentHashMap<>();
+
+  private final ExtensionRegistry extensionRegistry;
+
+  public ZeroCopyProtobufDecoder() {
+    this(ExtensionRegistry.newInstance());
+  }
+
+  public ZeroCopyProtobufDecoder(ExtensionRegistry extensionRegistry) {
+    super(extensionRegistry);
+    this.extensionRegistry = extensionRegistry;
+  }
+
+  @Override
+  public Message decode(DataBuffer dataBuffer, ResolvableType targetType, MimeType mimeType,
+    Map<String, Object> hints) throws DecodingException {
+
+    try (DataBuffer.ByteBufferIterator buffers = dataBuffer.readableByteBuffers()) {
+      ByteBuffer first = null;
+      List<ByteBuffer> chunks = null;
+      while (buffers.hasNext()) {
+        ByteBuffer buffer = buffers.next();
+        if (first == null) {
+          first = buffer;
+        } else {
+          if (chunks == null) {
+            chunks = new ArrayList<>();
+            chunks.add(first);
+          }
+          chunks.add(buffer);
+        }
+      }
+
+      CodedInputStream input;
+      int size = dataBuffer.readableByteCount();
+      if (first == null) {
+        input = CodedInputStream.newInstance(new byte[0]);
+      } else if (chunks == null && first.hasArray()) {
+        input = CodedInputStream.newInstance(first);
+      } else if (size <= SCRATCH_BYTES) {
+        byte[] scratch = SCRATCH.get();
+        dataBuffer.read(scratch, 0, size);
+        input = CodedInputStream.newInstance(scratch, 0, size);
+      } else {
+        input = chunks != null ? CodedInputStream.newInstance(chunks) : CodedInputStream.newInstance(first);
+      }
+
+      return defaultInstance(targetType.toClass()).getParserForType().parseFrom(input, extensionRegistry);
+    } catch (IOException e) {
+      throw new DecodingException("I/O error while parsing input stream", e);
+    } catch (Exception e) {
+      throw new DecodingException("Could not read Protobuf message: " + e.getMessage(), e);
+    } finally {
+      DataBufferUtils.release(dataBuffer);
+    }
+  }
+
+  static Message defaultInstance(Class<?> type) {
+    return DEFAULT_INSTANCES.computeIfAbsent(type, key -> {
+      try {
+        return (Message) key.getMethod("getDefaultInstance").invoke(null);
+      } catch (ReflectiveOperationException e) {
+        throw new IllegalArgumentException("Not a generated Protobuf message: " + key, e);
+      }
+    });
+  }
+}
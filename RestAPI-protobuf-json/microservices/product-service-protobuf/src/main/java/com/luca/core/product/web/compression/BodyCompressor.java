@@ -0,0 +1,135 @@
+package com.luca.core.product.web.compression;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+
+/**
+ * Compresses a whole body in one pass into a single buffer of the server, with a Deflater or
+ * a ZstdCompressCtx kept per thread and reused across bodies. Creating them, as a
+ * {@link CodingStream} does per body, costs several times the compression of a small body.
+ *
+ * The formats are those of the Netty codecs: gzip with a minimal header, zlib for deflate,
+ * and a single zstd frame.
+ */
+final class BodyCompressor {
+
+  private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+  private static final int GZIP_TRAILER = 8;
+
+  private static final int SCRATCH_BYTES = 64 * 1024;
+
+  private final ContentCoding coding;
+
+  private final ThreadLocal<Deflater> deflaters;
+
+  private final ThreadLocal<CRC32> checksums = ThreadLocal.withInitial(CRC32::new);
+
+  private final ThreadLocal<ZstdCompressCtx> zstdContexts;
+
+  private final ThreadLocal<byte[]> inputScratch = ThreadLocal.withInitial(() -> new byte[SCRATCH_BYTES]);
+
+  private final ThreadLocal<byte[]> outputScratch = ThreadLocal.withInitial(() -> new byte[SCRATCH_BYTES]);
+
+  BodyCompressor(ContentCoding coding, int level) {
+    this.coding = coding;
+    this.deflaters = ThreadLocal.withInitial(() -> new Deflater(level, coding == ContentCoding.GZIP));
+    this.zstdContexts = ThreadLocal.withInitial(() -> new ZstdCompressCtx().setLevel(level));
+  }
+
+  /**
+   * Compresses and releases the body.
+   */
+  DataBuffer compress(DataBuffer body, DataBufferFactory bufferFactory) {
+    try {
+      return coding == ContentCoding.ZSTD ? zstd(body, bufferFactory) : deflate(body, bufferFactory);
+    } finally {
+      DataBufferUtils.release(body);
+    }
+  }
+
+  private DataBuffer deflate(DataBuffer body, DataBufferFactory bufferFactory) {
+    int length = body.readableByteCount();
+    // zlib's compressBound, the zlib wrapper fits in its 13 spare bytes
+    int bound = length + (length >> 12) + (length >> 14) + (length >> 25) + 13
+      + (coding == ContentCoding.GZIP ? GZIP_HEADER.length + GZIP_TRAILER : 0);
+    Deflater deflater = deflaters.get();
+    CRC32 checksum = checksums.get();
+    checksum.reset();
+
+    DataBuffer compressed = bufferFactory.allocateBuffer(bound);
+    boolean release = true;
+    try (DataBuffer.ByteBufferIterator outputs = compressed.writableByteBuffers();
+         DataBuffer.ByteBufferIterator inputs = body.readableByteBuffers()) {
+      ByteBuffer output = outputs.next();
+      int start = output.position();
+      if (coding == ContentCoding.GZIP) {
+        output.put(GZIP_HEADER);
+      }
+      while (inputs.hasNext()) {
+        ByteBuffer input = inputs.next();
+        if (coding == ContentCoding.GZIP) {
+          checksum.update(input.duplicate());
+        }
+        deflater.setInput(input);
+        while (!deflater.needsInput()) {
+          deflate(deflater, output);
+        }
+      }
+      deflater.finish();
+      while (!deflater.finished()) {
+        deflate(deflater, output);
+      }
+      if (coding == ContentCoding.GZIP) {
+        putIntLittleEndian(output, (int) checksum.getValue());
+        putIntLittleEndian(output, length);
+      }
+      compressed.writePosition(compressed.writePosition() + output.position() - start);
+      release = false;
+      return compressed;
+    } finally {
+      // drops the input, not to hold on to the pooled buffer
+      deflater.reset();
+      if (release) {
+        DataBufferUtils.release(compressed);
+      }
+    }
+  }
+
+  private DataBuffer zstd(DataBuffer body, DataBufferFactory bufferFactory) {
+    int length = body.readableByteCount();
+    int bound = (int) Zstd.compressBound(length);
+    byte[] input = length <= SCRATCH_BYTES ? inputScratch.get() : new byte[length];
+    byte[] output = bound <= SCRATCH_BYTES ? outputScratch.get() : new byte[bound];
+    body.read(input, 0, length);
+
+    int size;
+    try {
+      size = zstdContexts.get().compressByteArray(output, 0, bound, input, 0, length);
+    } catch (RuntimeException e) {
+      zstdContexts.remove();
+      throw e;
+    }
+    return bufferFactory.allocateBuffer(size).write(output, 0, size);
+  }
+
+  private static void deflate(Deflater deflater, ByteBuffer output) {
+    if (!output.hasRemaining()) {
+      throw new IllegalStateException("Compressed body exceeds its bound");
+    }
+    deflater.deflate(output);
+  }
+
+  private static void putIntLittleEndian(ByteBuffer output, int value) {
+    output.put((byte) value);
+    output.put((byte) (value >> 8));
+    output.put((byte) (value >> 16));
+    output.put((byte) (value >> 24));
+  }
+}
@@ -0,0 +1,187 @@
+package com.luca.core.product.web.errors;
+
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.UNPROCESSABLE_ENTITY;
+
+import com.google.protobuf.CodedOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+/**
+ * Error responses of GET /product/{productId} returned as values instead of thrown, the
+ * fast error mode for miss-heavy or abusive traffic. They skip the exception handler lookup
+ * and the encoder of {@link GlobalControllerExceptionHandler}, which returns the same
+ * ErrorInfo for the same errors.
+ *
+ * The body is written by hand from pre-encoded fields: the status and the constant part of
+ * the message are encoded once, the timestamp once per second, and the productId is written
+ * as digits into the single array allocated per response. Timestamps therefore have second
+ * precision.
+ *
+ * Used when "app.errors.fast.enabled".
+ */
+@Component
+@ConditionalOnProperty(name = "app.errors.fast.enabled", havingValue = "true")
+public final class ErrorResponses {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ErrorResponses.class);
+
+  private static final int TIMESTAMP = 1;
+  private static final int PATH = 2;
+  private static final int HTTP_STATUS = 3;
+  private static final int MESSAGE = 4;
+
+  private static final byte[] PRODUCT_PATH = ascii("/product/");
+
+  private final Template notFound = new Template(NOT_FOUND, "No product found for productId: ");
+
+  private final Template invalidProductId = new Template(UNPROCESSABLE_ENTITY, "Invalid productId: ");
+
+  private final Clock clock;
+
+  private volatile Timestamp timestamp = new Timestamp(Long.MIN_VALUE, null);
+
+  @Autowired
+  public ErrorResponses() {
+    this(Clock.systemDefaultZone());
+  }
+
+  public ErrorResponses(Clock clock) {
+    this.clock = clock;
+  }
+
+  /**
+   * 404, no product with the productId.
+   */
+  public ResponseEntity<byte[]> notFound(int productId) {
+    return notFound.respond(productId);
+  }
+
+  /**
+   * 422, the productId is not positive.
+   */
+  public ResponseEntity<byte[]> invalidProductId(int productId) {
+    return invalidProductId.respond(productId);
+  }
+
+  /**
+   * The encoded timestamp field, as ZonedDateTime.toString() truncated to the second.
+   */
+  private byte[] timestampField() {
+    long second = Math.floorDiv(clock.millis(), 1000);
+    Timestamp current = timestamp;
+    if (current.second != second) {
+      String formatted = ZonedDateTime.ofInstant(Instant.ofEpochSecond(second), clock.getZone()).toString();
+      current = new Timestamp(second, field(TIMESTAMP, ascii(formatted)));
+      timestamp = current;
+    }
+    return current.field;
+  }
+
+  private static byte[] field(int number, byte[] value) {
+    byte[] field = new byte[CodedOutputStream.computeTagSize(number) + CodedOutputStream.computeUInt32SizeNoTag(value.length)
+      + value.length];
+    int offset = writeVarint(field, 0, number << 3 | 2);
+    offset = writeVarint(field, offset, value.length);
+    System.arraycopy(value, 0, field, offset, value.length);
+    return field;
+  }
+
+  private static int writeVarint(byte[] bytes, int offset, int value) {
+    while ((value & ~0x7F) != 0) {
+      bytes[offset++] = (byte) (value & 0x7F | 0x80);
+      value >>>= 7;
+    }
+    bytes[offset++] = (byte) value;
+    return offset;
+  }
+
+  /**
+   * Writes the decimal digits of the value ending before the offset.
+   */
+  private static void writeDigits(byte[] bytes, int end, long value) {
+    long remaining = Math.abs(value);
+    do {
+      bytes[--end] = (byte) ('0' + remaining % 10);
+      remaining /= 10;
+    } while (remaining != 0);
+    if (value < 0) {
+      bytes[--end] = '-';
+    }
+  }
+
+  private static int digits(long value) {
+    int digits = value < 0 ? 2 : 1;
+    for (long remaining = Math.abs(value); remaining >= 10; remaining /= 10) {
+      digits++;
+    }
+    return digits;
+  }
+
+  private static byte[] ascii(String value) {
+    return value.getBytes(StandardCharsets.US_ASCII);
+  }
+
+  private record Timestamp(long second, byte[] field) {
+  }
+
+  /**
+   * An error about a productId: path and message end with it.
+   */
+  private final class Template {
+
+    private final HttpStatus status;
+
+    private final String message;
+
+    private final byte[] messagePrefix;
+
+    private final byte[] statusField;
+
+    Template(HttpStatus status, String message) {
+      this.status = status;
+      this.message = message;
+      this.messagePrefix = ascii(message);
+      this.statusField = new byte[CodedOutputStream.computeInt32Size(HTTP_STATUS, status.value())];
+      writeVarint(statusField, writeVarint(statusField, 0, HTTP_STATUS << 3), status.value());
+    }
+
+    ResponseEntity<byte[]> respond(int productId) {
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("Returning HTTP status: {} for path: /product/{}, message: {}{}", status, productId, message, productId);
+      }
+
+      byte[] timestampField = timestampField();
+      int digits = digits(productId);
+      int pathLength = PRODUCT_PATH.length + digits;
+      int messageLength = messagePrefix.length + digits;
+      byte[] body = new byte[timestampField.length
+        + 1 + CodedOutputStream.computeUInt32SizeNoTag(pathLength) + pathLength
+        + statusField.length
+        + 1 + CodedOutputStream.computeUInt32SizeNoTag(messageLength) + messageLength];
+
+      System.arraycopy(timestampField, 0, body, 0, timestampField.length);
+      int offset = writeVarint(body, timestampField.length, PATH << 3 | 2);
+      offset = writeVarint(body, offset, pathLength);
+      System.arraycopy(PRODUCT_PATH, 0, body, offset, PRODUCT_PATH.length);
+      offset += pathLength;
+      writeDigits(body, offset, productId);
+      System.arraycopy(statusField, 0, body, offset, statusField.length);
+      offset = writeVarint(body, offset + statusField.length, MESSAGE << 3 | 2);
+      offset = writeVarint(body, offset, messageLength);
+      System.arraycopy(messagePrefix, 0, body, offset, messagePrefix.length);
+      writeDigits(body, offset + messageLength, productId);
+
+      return ResponseEntity.status(status).body(body);
+    }
+  }
+}
@@ -2,52 +2,75 @@ package com.luca.core.product.web.errors;
 
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.PRECONDITION_FAILED;
 import static org.springframework.http.HttpStatus.UNPROCESSABLE_ENTITY;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.web.bind.annotation.ExceptionHandler;
-import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import com.luca.core.product.web.codec.ProductFormat;
+import com.luca.core.product.web.codec.UnifiedFormats;
 import com.luca.core.product.web.exceptions.BadRequestException;
 import com.luca.core.product.web.exceptions.InvalidInputException;
 import com.luca.core.product.web.exceptions.NotFoundException;
+import com.luca.core.product.web.exceptions.PreconditionFailedException;
 import com.luca.error.protobuf.ErrorInfoProto.ErrorInfo;
 
 import java.time.ZonedDateTime;
 
+/**
+ * Returns errors as ErrorInfo messages, in the format negotiated by Accept in the unified
+ * mode and as Protobuf otherwise. The content type is set explicitly: left to the default
+ * negotiation, Jackson would claim the message for application/json and fail to encode it.
+ */
 @RestControllerAdvice
 class GlobalControllerExceptionHandler {
 
   private static final Logger LOG = LoggerFactory.getLogger(GlobalControllerExceptionHandler.class);
 
-  @ResponseStatus(BAD_REQUEST)
+  private final boolean unified;
+
+  @Autowired
+  public GlobalControllerExceptionHandler(ObjectProvider<UnifiedFormats> unifiedFormats) {
+    this.unified = unifiedFormats.getIfAvailable() != null;
+  }
+
   @ExceptionHandler(BadRequestException.class)
-  public byte[] handleBadRequestExceptions(
+  public ResponseEntity<ErrorInfo> handleBadRequestExceptions(
           ServerHttpRequest request, BadRequestException ex) {
 
     return createHttpErrorInfo(BAD_REQUEST, request, ex);
   }
 
-  @ResponseStatus(NOT_FOUND)
   @ExceptionHandler(NotFoundException.class)
-  public byte[] handleNotFoundExceptions(
+  public ResponseEntity<ErrorInfo> handleNotFoundExceptions(
           ServerHttpRequest request, NotFoundException ex) {
 
     return createHttpErrorInfo(NOT_FOUND, request, ex);
   }
 
-  @ResponseStatus(UNPROCESSABLE_ENTITY)
+  @ExceptionHandler(PreconditionFailedException.class)
+  public ResponseEntity<ErrorInfo> handlePreconditionFailedExceptions(
+          ServerHttpRequest request, PreconditionFailedException ex) {
+
+    return createHttpErrorInfo(PRECONDITION_FAILED, request, ex);
+  }
+
   @ExceptionHandler(InvalidInputException.class)
-  public byte[] handleInvalidInputException(
+  public ResponseEntity<ErrorInfo> handleInvalidInputException(
           ServerHttpRequest request, InvalidInputException ex) {
 
     return createHttpErrorInfo(UNPROCESSABLE_ENTITY, request, ex);
   }
 
-  private byte[] createHttpErrorInfo(
+  private ResponseEntity<ErrorInfo> createHttpErrorInfo(
           HttpStatus httpStatus, ServerHttpRequest request, Exception ex) {
 
     final String path = request.getPath().pathWithinApplication().value();
@@ -55,11 +78,20 @@ class GlobalControllerExceptionHandler {
 
     LOG.debug("Returning HTTP status: {} for path: {}, message: {}", httpStatus, path, message);
 
-    return ErrorInfo.newBuilder()
+    ErrorInfo errorInfo = ErrorInfo.newBuilder()
             .setTimestamp(ZonedDateTime.now().toString())
             .setPath(path)
             .setMessage(message)
-            .setHttpStatus(httpStatus.value()).
-            build( ).toByteArray();
+            .setHttpStatus(httpStatus.value())
+            .build();
+
+    if (!unified) {
+      return ResponseEntity.status(httpStatus).contentType(ProductFormat.PROTOBUF.mediaType()).body(errorInfo);
+    }
+    ProductFormat format = ProductFormat.negotiate(String.join(",", request.getHeaders().getOrEmpty(HttpHeaders.ACCEPT)));
+    return ResponseEntity.status(httpStatus)
+            .contentType((format != null ? format : ProductFormat.PROTOBUF).mediaType())
+            .varyBy(HttpHeaders.ACCEPT)
+            .body(errorInfo);
   }
 }
\ No newline at end of file
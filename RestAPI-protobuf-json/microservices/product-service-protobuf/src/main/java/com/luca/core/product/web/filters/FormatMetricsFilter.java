@@ -0,0 +1,51 @@
+package com.luca.core.product.web.filters;
+
+import com.luca.core.product.web.codec.ProductFormat;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * Counts requests by the format of their response in "product.format.requests", tagged with
+ * format and uri pattern, in the unified mode. Responses without a body, such as 304 and 204,
+ * are tagged with format "none".
+ */
+@Component
+@ConditionalOnProperty(name = "app.formats.unified.enabled", havingValue = "true")
+public class FormatMetricsFilter implements WebFilter {
+
+  private final MeterRegistry registry;
+
+  @Autowired
+  public FormatMetricsFilter(MeterRegistry registry) {
+    this.registry = registry;
+  }
+
+  @Override
+  public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+    exchange.getResponse().beforeCommit(() -> {
+      record(exchange, exchange.getResponse().getHeaders().getContentType());
+      return Mono.empty();
+    });
+    return chain.filter(exchange);
+  }
+
+  private void record(ServerWebExchange exchange, MediaType contentType) {
+    ProductFormat format = ProductFormat.of(contentType);
+    Object pattern = exchange.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+    Counter.builder("product.format.requests")
+      .description("Requests by the format of their response")
+      .tag("format", format != null ? format.tag() : "none")
+      .tag("uri", pattern != null ? pattern.toString() : "UNKNOWN")
+      .register(registry)
+      .increment();
+  }
+}
@@ -0,0 +1,86 @@
+package com.luca.core.product.web.services;
+
+import com.luca.core.product.persistence.ProductEntity;
+
+/**
+ * Entity tags for product representations.
+ *
+ * A tag is derived from the document id and its @Version, so it changes on every update
+ * and a product that is deleted and created again never reuses an old tag. Tags are weak,
+ * since the serviceAddress in the body differs between instances serving the same version.
+ */
+final class ETags {
+
+  private ETags() {}
+
+  static String of(ProductEntity entity) {
+    return of(entity.getId(), entity.getVersion());
+  }
+
+  static String of(String id, Integer version) {
+    return "W/\"" + id + "-" + version + "\"";
+  }
+
+  /**
+   * Weak comparison of an If-None-Match header against a tag.
+   *
+   * @param header If-None-Match value, may be null
+   * @return true if the header lists the tag or is "*"
+   */
+  static boolean matches(String header, String eTag) {
+    if (header == null) {
+      return false;
+    }
+
+    String opaque = opaque(eTag);
+    for (String candidate : header.split(",")) {
+      candidate = candidate.trim();
+      if (candidate.equals("*") || opaque(candidate).equals(opaque)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Parses a tag created by {@link #of}, weak or strong.
+   *
+   * @return the tag, or null if it was not created by this service
+   */
+  static Tag parse(String eTag) {
+    String opaque = opaque(eTag.trim());
+    if (opaque.length() < 2 || opaque.charAt(0) != '"' || opaque.charAt(opaque.length() - 1) != '"') {
+      return null;
+    }
+
+    String value = opaque.substring(1, opaque.length() - 1);
+    int separator = value.lastIndexOf('-');
+    if (separator < 1) {
+      return null;
+    }
+    try {
+      return new Tag(value.substring(0, separator), Integer.parseInt(value.substring(separator + 1)));
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private static String opaque(String eTag) {
+    return eTag.startsWith("W/") ? eTag.substring(2) : eTag;
+  }
+
+  /**
+   * One version of one product document.
+   */
+  static final class Tag {
+
+    final String id;
+
+    final int version;
+
+    Tag(String id, int version) {
+      this.id = id;
+      this.version = version;
+    }
+  }
+}
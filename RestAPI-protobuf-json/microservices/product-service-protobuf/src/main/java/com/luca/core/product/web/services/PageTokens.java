@@ -0,0 +1,46 @@
+package com.luca.core.product.web.services;
+
+import com.luca.core.product.web.exceptions.InvalidInputException;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * Opaque continuation tokens of the keyset paginated listing.
+ *
+ * A token carries a format version and the last productId of the previous page, the next
+ * page starts after it. Clients must treat tokens as opaque.
+ */
+final class PageTokens {
+
+  private static final byte VERSION = 1;
+
+  private static final int LENGTH = 5;
+
+  private PageTokens() {}
+
+  static String after(int productId) {
+    byte[] token = ByteBuffer.allocate(LENGTH).put(VERSION).putInt(productId).array();
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(token);
+  }
+
+  /**
+   * @param token a token from a previous page, null or empty for the first page
+   * @return the productId the page starts after
+   */
+  static int lastProductId(String token) {
+    if (token == null || token.isEmpty()) {
+      return 0;
+    }
+
+    byte[] bytes;
+    try {
+      bytes = Base64.getUrlDecoder().decode(token);
+    } catch (IllegalArgumentException e) {
+      throw new InvalidInputException("Invalid page token: " + token);
+    }
+    if (bytes.length != LENGTH || bytes[0] != VERSION) {
+      throw new InvalidInputException("Invalid page token: " + token);
+    }
+    return ByteBuffer.wrap(bytes, 1, 4).getInt();
+  }
+}
@@ -1,7 +1,17 @@
 package com.luca.core.product.web.services;
 
+import java.util.List;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import com.luca.product.protobuf.ProductProto.Product;
+import com.luca.product.protobuf.ProductProto.ProductCreateResult;
+import com.luca.product.protobuf.ProductProto.ProductImportSummary;
+import com.luca.product.protobuf.ProductProto.ProductList;
+import com.luca.product.protobuf.ProductProto.ProductPage;
+import com.luca.product.protobuf.ProductProto.ProductPatch;
 
 public interface ProductService {
 
@@ -19,18 +29,130 @@ public interface ProductService {
     value    = "/product",
     consumes = "application/x-protobuf",
     produces = "application/x-protobuf")
-  Product createProduct(@RequestBody Product body);
+  Mono<Product> createProduct(@RequestBody Product body);
+
+  /**
+   * Sample usage, see below.
+   *
+   * curl -X POST http://localhost:7001/products \
+   *   -H "Content-Type: application/x-protobuf" \
+   *   --data-binary @products.bin
+   *
+   * Inserts all products with one unordered bulk write; duplicates do not fail the batch.
+   *
+   * @param body A binary ProductList of the new products
+   * @return The status of each product, in request order
+   */
+  @PostMapping(
+    value    = "/products",
+    consumes = "application/x-protobuf",
+    produces = "application/x-protobuf")
+  Mono<ProductCreateResult> createProducts(@RequestBody ProductList body);
+
+  /**
+   * Sample usage, see below.
+   *
+   * curl -X POST http://localhost:7001/products/import \
+   *   -H "Content-Type: application/x-protobuf" \
+   *   --data-binary @products.delimited
+   *
+   * Streams length-delimited Product messages (writeDelimitedTo framing), decoded as they
+   * arrive and inserted in bulk writes of "app.import.batch-size" products. The upload is
+   * read no faster than the inserts complete.
+   *
+   * @param body Length-delimited Product messages
+   * @return Counts of the received, created, duplicate and failed products
+   */
+  @PostMapping(
+    value    = "/products/import",
+    consumes = "application/x-protobuf",
+    produces = "application/x-protobuf")
+  Mono<ProductImportSummary> importProducts(@RequestBody Flux<Product> body);
 
   /**
    * Sample usage: "curl $HOST:$PORT/product/1".
    *
+   * Responses carry an ETag; repeating it in If-None-Match answers 304 Not Modified
+   * without a body while the product is unchanged.
+   *
    * @param productId Id of the product
-   * @return A binary representation of the product, if found, else null
+   * @param ifNoneMatch ETags the client already holds, optional
+   * @param accept Formats acceptable to the client, negotiated in the unified mode, optional
+   * @return A binary representation of the product, if found, else null.
+   *         Returned pre-encoded, so cached products are written without re-serialization.
    */
   @GetMapping(
     value = "/product/{productId}",
     produces = "application/x-protobuf")
-  Product getProduct(@PathVariable int productId);
+  Mono<ResponseEntity<byte[]>> getProduct(
+    @PathVariable int productId,
+    @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+    @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept);
+
+  /**
+   * Sample usage: "curl $HOST:$PORT/products?ids=1,2,3".
+   *
+   * @param ids Ids of the products, resolved with a single query
+   * @return A binary ProductList of the products found, in the order requested,
+   *         with the ids that were not found in missingProductIds
+   */
+  @GetMapping(
+    value = "/products",
+    produces = "application/x-protobuf")
+  Mono<ProductList> getProducts(@RequestParam List<Integer> ids);
+
+  /**
+   * Sample usage: "curl $HOST:$PORT/products/page?size=100&token=AQAAAGQ".
+   *
+   * Pages in productId order by seeking past the last productId of the previous page,
+   * so every page costs the same.
+   *
+   * @param token nextPageToken of the previous page, omitted for the first page
+   * @param size Number of products per page
+   * @return A binary ProductPage, its nextPageToken is empty on the last page
+   */
+  @GetMapping(
+    value = "/products/page",
+    produces = "application/x-protobuf")
+  Mono<ProductPage> getProductPage(
+    @RequestParam(required = false) String token,
+    @RequestParam(defaultValue = "100") int size);
+
+  /**
+   * Sample usage: "curl $HOST:$PORT/products/stream > products.delimited".
+   *
+   * Streams the whole catalog in productId order straight from a Mongo cursor, fetching
+   * "app.stream.cursor-batch-size" documents at a time as the client reads.
+   *
+   * @return Length-delimited Product messages (writeDelimitedTo framing)
+   */
+  @GetMapping(
+    value = "/products/stream",
+    produces = "application/x-protobuf")
+  Flux<Product> streamProducts();
+
+  /**
+   * Sample usage, see below.
+   *
+   * curl -X PATCH $HOST:$PORT/product/1 \
+   *   -H "Content-Type: application/x-protobuf" \
+   *   -H 'If-Match: W/"<ETag of GET /product/1>"' \
+   *   --data-binary @patch.bin
+   *
+   * Sets the fields listed in the update mask with one atomic update.
+   *
+   * @param body A binary ProductPatch, the update mask may list "name" and "weight"
+   * @param ifMatch ETag of the version the patch is based on, optional; 412 if the product changed since
+   * @return A binary representation of the updated product, with its new ETag
+   */
+  @PatchMapping(
+    value    = "/product/{productId}",
+    consumes = "application/x-protobuf",
+    produces = "application/x-protobuf")
+  Mono<ResponseEntity<Product>> patchProduct(
+    @PathVariable int productId,
+    @RequestBody ProductPatch body,
+    @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch);
 
   /**
    * Sample usage: "curl -X DELETE $HOST:$PORT/product/1".
@@ -38,5 +160,5 @@ public interface ProductService {
    * @param productId Id of the product
    */
   @DeleteMapping(value = "/product/{productId}")
-  void deleteProduct(@PathVariable int productId);
+  Mono<Void> deleteProduct(@PathVariable int productId);
 }
@@ -1,16 +1,50 @@
 package com.luca.core.product.web.services;
 
+import com.luca.core.product.cache.ProductCache;
+import com.luca.core.product.cache.ProductLookupFilter;
+import com.luca.core.product.cache.ProductPayload;
+import com.luca.core.product.cache.ProductPayloadCache;
 import com.luca.core.product.mapper.ProductMapper;
+import com.luca.core.product.mapper.ProductTranscoder;
 import com.luca.core.product.persistence.ProductEntity;
+import com.luca.core.product.persistence.ProductInsertStatus;
+import com.luca.core.product.persistence.ProductWrite;
+import com.luca.core.product.persistence.ProductWriteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.bson.RawBsonDocument;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import com.luca.product.protobuf.ProductProto.Product;
+import com.luca.product.protobuf.ProductProto.ProductCreateResult;
+import com.luca.product.protobuf.ProductProto.ProductImportSummary;
+import com.luca.product.protobuf.ProductProto.ProductList;
+import com.luca.product.protobuf.ProductProto.ProductPage;
+import com.luca.product.protobuf.ProductProto.ProductPatch;
 import com.luca.core.product.web.exceptions.InvalidInputException;
 import com.luca.core.product.web.exceptions.NotFoundException;
-import com.luca.core.product.persistence.ProductRepository;
+import com.luca.core.product.web.exceptions.PreconditionFailedException;
+import com.luca.core.product.persistence.ProductPersistence;
+import com.luca.core.product.web.codec.ProductFormat;
+import com.luca.core.product.web.codec.UnifiedFormats;
+import com.luca.core.product.web.errors.ErrorResponses;
 import com.luca.core.product.web.errors.ServiceUtil;
 
 @RestController
@@ -20,53 +54,565 @@ public class ProductServiceImpl implements ProductService {
 
   private final ServiceUtil serviceUtil;
 
-  private final ProductRepository repository;
+  private final ProductPersistence persistence;
+
+  private final ProductCache cache;
+
+  private final ProductPayloadCache payloadCache;
+
+  private final ProductLookupFilter lookupFilter;
+
+  private final ProductWriteBuffer writeBuffer;
 
   private final ProductMapper mapper;
 
+  private final ProductTranscoder transcoder;
+
+  private final ErrorResponses errorResponses;
+
+  private final UnifiedFormats unifiedFormats;
+
+  private final int maxBatchProducts;
+
+  private final int maxBatchIds;
+
+  private final int importBatchSize;
+
+  private final int importMaxReportedFailures;
+
+  private final int streamCursorBatchSize;
+
+  private final int maxPageSize;
+
+  private final boolean storedPayload;
+
+  private volatile byte[] serviceAddressField;
+
   @Autowired
-  public ProductServiceImpl(ProductRepository repository, ProductMapper mapper, ServiceUtil serviceUtil) {
-    this.repository = repository;
+  public ProductServiceImpl(ProductPersistence persistence, ProductCache cache,
+    ObjectProvider<ProductPayloadCache> payloadCache, ProductLookupFilter lookupFilter,
+    ObjectProvider<ProductWriteBuffer> writeBuffer, ProductMapper mapper,
+    ObjectProvider<ProductTranscoder> transcoder, ObjectProvider<ErrorResponses> errorResponses,
+    ObjectProvider<UnifiedFormats> unifiedFormats, ServiceUtil serviceUtil,
+    @Value("${app.batch.max-products:10000}") int maxBatchProducts, @Value("${app.batch.max-ids:1000}") int maxBatchIds,
+    @Value("${app.import.batch-size:1000}") int importBatchSize,
+    @Value("${app.import.max-reported-failures:1000}") int importMaxReportedFailures,
+    @Value("${app.stream.cursor-batch-size:500}") int streamCursorBatchSize,
+    @Value("${app.page.max-size:1000}") int maxPageSize,
+    @Value("${app.persistence.stored-payload.enabled:false}") boolean storedPayload) {
+    this.persistence = persistence;
+    this.cache = cache;
+    this.payloadCache = payloadCache.getIfAvailable();
+    this.lookupFilter = lookupFilter;
+    this.writeBuffer = writeBuffer.getIfAvailable();
+    if (this.writeBuffer != null) {
+      this.writeBuffer.onFailedWrite(this::evict);
+    }
     this.mapper = mapper;
+    this.transcoder = transcoder.getIfAvailable();
+    this.errorResponses = errorResponses.getIfAvailable();
+    this.unifiedFormats = unifiedFormats.getIfAvailable();
     this.serviceUtil = serviceUtil;
+    this.maxBatchProducts = maxBatchProducts;
+    this.maxBatchIds = maxBatchIds;
+    this.importBatchSize = importBatchSize;
+    this.importMaxReportedFailures = importMaxReportedFailures;
+    this.streamCursorBatchSize = streamCursorBatchSize;
+    this.maxPageSize = maxPageSize;
+    this.storedPayload = storedPayload;
   }
 
   @Override
-  public Product createProduct(Product body) {
-    try {
-      ProductEntity entity = mapper.apiToEntity(body);
-      ProductEntity newEntity = repository.save(entity);
+  public Mono<Product> createProduct(Product body) {
+    ProductEntity entity = toEntity(body);
+
+    Mono<ProductEntity> saved = writeBuffer == null
+      ? persistence.insert(entity)
+      : exists(entity.getProductId())
+        .flatMap(exists -> exists ? Mono.just(false) : writeBuffer.create(entity))
+        .flatMap(created -> created
+          ? Mono.just(entity)
+          : Mono.error(new DuplicateKeyException("Existing productId: " + entity.getProductId())));
+
+    return saved
+      .onErrorMap(DuplicateKeyException.class,
+        ex -> new InvalidInputException("Duplicate key, Product Id: " + body.getProductId()))
+      .doOnNext(e -> {
+        lookupFilter.recordCreated(e.getProductId());
+        evict(e.getProductId());
+        LOG.debug("createProduct: entity created for productId: {}", body.getProductId());
+      })
+      .map(mapper::entityToApi);
+  }
 
-      LOG.debug("createProduct: entity created for productId: {}", body.getProductId());
-      return mapper.entityToApi(newEntity);
+  @Override
+  public Mono<ProductCreateResult> createProducts(ProductList body) {
+    if (body.getProductsCount() > maxBatchProducts) {
+      return Mono.error(new InvalidInputException("Too many products in batch: " + body.getProductsCount()
+        + ", at most " + maxBatchProducts + " allowed"));
+    }
 
-    } catch (DuplicateKeyException dke) {
-      throw new InvalidInputException("Duplicate key, Product Id: " + body.getProductId());
+    List<ProductEntity> entities = new ArrayList<>(body.getProductsCount());
+    for (Product product : body.getProductsList()) {
+      entities.add(toEntity(product));
     }
+
+    return flushPendingWrites()
+      .then(persistence.insertAll(entities))
+      .map(statuses -> {
+        ProductCreateResult.Builder result = ProductCreateResult.newBuilder();
+        for (int i = 0; i < statuses.size(); i++) {
+          int productId = entities.get(i).getProductId();
+          ProductInsertStatus status = statuses.get(i);
+          if (status == ProductInsertStatus.CREATED) {
+            lookupFilter.recordCreated(productId);
+            evict(productId);
+          }
+          result.addItemsBuilder()
+            .setProductId(productId)
+            .setStatus(ProductCreateResult.Status.valueOf(status.name()));
+        }
+
+        LOG.debug("createProducts: inserted batch of {} products", statuses.size());
+
+        return result.build();
+      });
   }
 
   @Override
-  public Product getProduct(int productId) {
+  public Mono<ProductImportSummary> importProducts(Flux<Product> body) {
+    return Mono.defer(() -> {
+      ProductImportSummary.Builder summary = ProductImportSummary.newBuilder();
+
+      return body
+        .map(this::toEntity)
+        .buffer(importBatchSize)
+        .concatMap(entities -> flushPendingWrites()
+          .then(persistence.insertAll(entities))
+          .doOnNext(statuses -> recordImported(summary, entities, statuses)))
+        .then(Mono.fromCallable(summary::build))
+        .onErrorResume(e -> {
+          LOG.warn("importProducts: stopped after {} products: {}", summary.getReceived(), e.toString());
+          return Mono.just(summary.setError(String.valueOf(e.getMessage())).build());
+        })
+        .doOnNext(result -> LOG.debug("importProducts: received {} products, created {}",
+          result.getReceived(), result.getCreated()));
+    });
+  }
+
+  private void recordImported(ProductImportSummary.Builder summary, List<ProductEntity> entities,
+    List<ProductInsertStatus> statuses) {
+
+    summary.setReceived(summary.getReceived() + statuses.size());
+    for (int i = 0; i < statuses.size(); i++) {
+      int productId = entities.get(i).getProductId();
+      ProductInsertStatus status = statuses.get(i);
+      switch (status) {
+        case CREATED -> {
+          summary.setCreated(summary.getCreated() + 1);
+          lookupFilter.recordCreated(productId);
+          evict(productId);
+        }
+        case DUPLICATE -> summary.setDuplicates(summary.getDuplicates() + 1);
+        case FAILED -> summary.setFailed(summary.getFailed() + 1);
+      }
+      if (status != ProductInsertStatus.CREATED && summary.getFailuresCount() < importMaxReportedFailures) {
+        summary.addFailuresBuilder()
+          .setProductId(productId)
+          .setStatus(ProductCreateResult.Status.valueOf(status.name()));
+      }
+    }
+  }
 
+  @Override
+  public Mono<ResponseEntity<byte[]>> getProduct(int productId, String ifNoneMatch, String accept) {
+    if (unifiedFormats == null) {
+      return findProduct(productId, ifNoneMatch, ProductFormat.PROTOBUF);
+    }
+
+    ProductFormat negotiated = ProductFormat.negotiate(accept);
+    ProductFormat format = negotiated != null ? negotiated : ProductFormat.PROTOBUF;
+    return findProduct(productId, ifNoneMatch, format);
+  }
+
+  /**
+   * The encoded response of getProduct, cached per format. Only Protobuf bodies are
+   * transcoded or returned as fast errors; the other formats are rendered from the entity
+   * and their errors negotiated by the exception handler.
+   */
+  private Mono<ResponseEntity<byte[]>> findProduct(int productId, String ifNoneMatch, ProductFormat format) {
     if (productId < 1) {
-      throw new InvalidInputException("Invalid productId: " + productId);
+      return errorResponses != null && format == ProductFormat.PROTOBUF
+        ? Mono.just(fastError(errorResponses.invalidProductId(productId)))
+        : Mono.error(new InvalidInputException("Invalid productId: " + productId));
+    }
+
+    if (payloadCache != null) {
+      ProductPayload payload = payloadCache.get(productId, format);
+      if (payload != null) {
+        return Mono.just(respond(payload.getETag(), payload.getBody(), ifNoneMatch, format));
+      }
+    }
+
+    if (lookupFilter.isKnownMissing(productId)) {
+      return productNotFound(productId, format);
+    }
+
+    long stamp = payloadCache != null ? payloadCache.stamp() : 0;
+    long lookupStamp = lookupFilter.stamp();
+    Mono<ResponseEntity<byte[]>> missing = Mono.defer(() -> {
+      lookupFilter.recordMissing(productId, lookupStamp);
+      return productNotFound(productId, format);
+    });
+    if (transcoder != null && format == ProductFormat.PROTOBUF
+      && (writeBuffer == null || writeBuffer.pending(productId) == null)) {
+      return persistence.findRawByProductId(productId)
+        .map(document -> transcode(productId, document, ifNoneMatch, stamp))
+        .switchIfEmpty(missing);
+    }
+
+    return cache.get(productId, storedPayload ? this::findPayloadByProductId : this::findByProductId)
+      .map(entity -> {
+        LOG.debug("getProduct: found productId: {}", productId);
+
+        String eTag = ETags.of(entity);
+        if (ETags.matches(ifNoneMatch, eTag)) {
+          return respond(eTag, null, ifNoneMatch, format);
+        }
+
+        byte[] body = unifiedFormats != null
+          ? unifiedFormats.render(format, () -> encode(entity, format))
+          : encode(entity, format);
+        if (payloadCache != null) {
+          payloadCache.put(productId, format, new ProductPayload(eTag, body), stamp);
+        }
+
+        return respond(eTag, body, ifNoneMatch, format);
+      })
+      .switchIfEmpty(missing);
+  }
+
+  /**
+   * The body of a found product. Protobuf is encoded from the stored payload if the entity
+   * has one, the JSON formats from the Product message the entity maps to.
+   */
+  private byte[] encode(ProductEntity entity, ProductFormat format) {
+    if (format == ProductFormat.PROTOBUF) {
+      return entity.getPayload() != null
+        ? withServiceAddress(entity.getPayload())
+        : toApi(entity).toByteArray();
+    }
+    return unifiedFormats.toJson(format, toApi(entity));
+  }
+
+  /**
+   * The Product of an entity, with the serviceAddress of this instance. An entity read by
+   * findPayloadByProductId has no fields but its payload, which is parsed instead.
+   */
+  private Product toApi(ProductEntity entity) {
+    Product.Builder builder;
+    if (entity.getName() != null || entity.getPayload() == null) {
+      builder = mapper.entityToApi(entity).toBuilder();
+    } else {
+      try {
+        builder = Product.parseFrom(entity.getPayload()).toBuilder();
+      } catch (InvalidProtocolBufferException e) {
+        throw new IllegalStateException("Invalid stored payload of productId: " + entity.getProductId(), e);
+      }
+    }
+    return builder.setServiceAddress(serviceUtil.getServiceAddress()).build();
+  }
+
+  @Override
+  public Mono<ProductList> getProducts(List<Integer> ids) {
+    Set<Integer> productIds = new LinkedHashSet<>(ids);
+    if (productIds.size() > maxBatchIds) {
+      return Mono.error(new InvalidInputException("Too many productIds: " + productIds.size()
+        + ", at most " + maxBatchIds + " allowed"));
+    }
+
+    List<Integer> lookups = new ArrayList<>(productIds.size());
+    Map<Integer, ProductWrite> buffered = new HashMap<>();
+    for (int productId : productIds) {
+      if (productId < 1) {
+        return Mono.error(new InvalidInputException("Invalid productId: " + productId));
+      }
+      ProductWrite write = writeBuffer != null ? writeBuffer.pending(productId) : null;
+      if (write != null) {
+        buffered.put(productId, write);
+      } else if (!lookupFilter.isKnownMissing(productId)) {
+        lookups.add(productId);
+      }
+    }
+
+    long lookupStamp = lookupFilter.stamp();
+    Mono<Map<Integer, ProductEntity>> stored = lookups.isEmpty()
+      ? Mono.just(Map.of())
+      : persistence.findByProductIdIn(lookups).collectMap(ProductEntity::getProductId);
+    return stored
+      .map(found -> {
+        String serviceAddress = serviceUtil.getServiceAddress();
+        ProductList.Builder result = ProductList.newBuilder();
+        for (int productId : productIds) {
+          ProductWrite write = buffered.get(productId);
+          ProductEntity entity = write != null ? write.getInsert() : found.get(productId);
+          if (entity != null) {
+            result.addProducts(mapper.entityToApi(entity).toBuilder().setServiceAddress(serviceAddress));
+          } else {
+            result.addMissingProductIds(productId);
+          }
+        }
+        for (int productId : lookups) {
+          if (!found.containsKey(productId)) {
+            lookupFilter.recordMissing(productId, lookupStamp);
+          }
+        }
+
+        LOG.debug("getProducts: found {} of {} products", found.size(), productIds.size());
+
+        return result.build();
+      });
+  }
+
+  @Override
+  public Mono<ProductPage> getProductPage(String token, int size) {
+    if (size < 1 || size > maxPageSize) {
+      return Mono.error(new InvalidInputException("Invalid page size: " + size + ", must be between 1 and " + maxPageSize));
     }
 
-    ProductEntity entity = repository.findByProductId(productId)
-      .orElseThrow(() -> new NotFoundException("No product found for productId: " + productId));
+    // One extra product tells whether there is a next page
+    return Mono.fromCallable(() -> PageTokens.lastProductId(token))
+      .flatMap(lastProductId -> persistence.findPage(lastProductId, size + 1).collectList())
+      .map(entities -> {
+        String serviceAddress = serviceUtil.getServiceAddress();
+        ProductPage.Builder page = ProductPage.newBuilder();
+        for (ProductEntity entity : entities.subList(0, Math.min(size, entities.size()))) {
+          page.addProducts(mapper.entityToApi(entity).toBuilder().setServiceAddress(serviceAddress));
+        }
+        if (entities.size() > size) {
+          page.setNextPageToken(PageTokens.after(entities.get(size - 1).getProductId()));
+        }
+        return page.build();
+      });
+  }
 
-    Product.Builder builder = mapper.entityToApi(entity).toBuilder();
-    builder.setServiceAddress(serviceUtil.getServiceAddress());
-    Product response = builder.build();
+  @Override
+  public Flux<Product> streamProducts() {
+    String serviceAddress = serviceUtil.getServiceAddress();
+    return persistence.streamAll(streamCursorBatchSize)
+      .map(entity -> mapper.entityToApi(entity).toBuilder().setServiceAddress(serviceAddress).build());
+  }
 
-    LOG.debug("getProduct: found productId: {}", response.getProductId());
+  @Override
+  public Mono<ResponseEntity<Product>> patchProduct(int productId, ProductPatch body, String ifMatch) {
+    if (body.getUpdateMask().getPathsCount() == 0) {
+      return Mono.error(new InvalidInputException("Empty update mask"));
+    }
+
+    Map<String, Object> fields = new LinkedHashMap<>();
+    for (String path : body.getUpdateMask().getPathsList()) {
+      switch (path) {
+        case "name" -> fields.put("name", body.getProduct().getName());
+        case "weight" -> fields.put("weight", body.getProduct().getWeight());
+        default -> {
+          return Mono.error(new InvalidInputException("Field can not be patched: " + path));
+        }
+      }
+    }
 
-    return response;
+    return update(productId, fields, ifMatch)
+      .map(entity -> ResponseEntity.ok()
+        .eTag(ETags.of(entity))
+        .body(mapper.entityToApi(entity).toBuilder().setServiceAddress(serviceUtil.getServiceAddress()).build()));
   }
 
   @Override
-  public void deleteProduct(int productId) {
+  public Mono<Void> deleteProduct(int productId) {
     LOG.debug("deleteProduct: tries to delete an entity with productId: {}", productId);
-    repository.findByProductId(productId).ifPresent(e -> repository.delete(e));
+    if (writeBuffer != null) {
+      return writeBuffer.delete(productId)
+        .doFinally(signal -> evict(productId));
+    }
+    return persistence.deleteByProductId(productId)
+      .doOnNext(deleted -> LOG.debug("deleteProduct: productId: {} deleted: {}", productId, deleted))
+      .doFinally(signal -> evict(productId))
+      .then();
+  }
+
+  /**
+   * Encodes the response straight from the stored document, see {@link ProductTranscoder};
+   * bypasses the entity cache.
+   */
+  private ResponseEntity<byte[]> transcode(int productId, RawBsonDocument document, String ifNoneMatch, long stamp) {
+    LOG.debug("getProduct: found productId: {}", productId);
+
+    String eTag = ETags.of(transcoder.documentId(document), transcoder.version(document));
+    if (ETags.matches(ifNoneMatch, eTag)) {
+      return respond(eTag, null, ifNoneMatch, ProductFormat.PROTOBUF);
+    }
+
+    byte[] body = unifiedFormats != null
+      ? unifiedFormats.render(ProductFormat.PROTOBUF, () -> transcoder.toProduct(document, serviceAddressField()))
+      : transcoder.toProduct(document, serviceAddressField());
+    if (payloadCache != null) {
+      payloadCache.put(productId, ProductFormat.PROTOBUF, new ProductPayload(eTag, body), stamp);
+    }
+    return respond(eTag, body, ifNoneMatch, ProductFormat.PROTOBUF);
+  }
+
+  /**
+   * Answers 304 without a body if the client already holds the current tag, the body may
+   * then be null. The weak ETag is the same for every format of the unified mode;
+   * "Vary: Accept" keeps shared caches from mixing them up.
+   */
+  private ResponseEntity<byte[]> respond(String eTag, byte[] body, String ifNoneMatch, ProductFormat format) {
+    if (ETags.matches(ifNoneMatch, eTag)) {
+      return varied(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag)).build();
+    }
+    ResponseEntity.BodyBuilder builder = varied(ResponseEntity.ok().eTag(eTag));
+    if (format != ProductFormat.PROTOBUF) {
+      builder.contentType(format.mediaType());
+    }
+    return builder.body(body);
+  }
+
+  private ResponseEntity.BodyBuilder varied(ResponseEntity.BodyBuilder builder) {
+    return unifiedFormats != null ? builder.varyBy(HttpHeaders.ACCEPT) : builder;
+  }
+
+  /**
+   * Applies a patch with one findAndModify. With an If-Match tag the update only matches the
+   * tagged document and version; if that finds nothing, a second read tells a stale tag (412)
+   * from a missing product (404). Only the first tag of an If-Match list is considered.
+   */
+  private Mono<ProductEntity> update(int productId, Map<String, Object> fields, String ifMatch) {
+    if (productId < 1) {
+      return Mono.error(new InvalidInputException("Invalid productId: " + productId));
+    }
+
+    ETags.Tag expected = null;
+    if (ifMatch != null && !ifMatch.trim().equals("*")) {
+      expected = ETags.parse(ifMatch.split(",")[0]);
+      if (expected == null) {
+        return Mono.error(new PreconditionFailedException("If-Match does not match productId: " + productId));
+      }
+    }
+
+    Mono<ProductEntity> updated = expected == null
+      ? persistence.update(productId, fields, null, null)
+      : persistence.update(productId, fields, expected.id, expected.version);
+    return flushPendingWrites()
+      .then(updated)
+      .switchIfEmpty(Mono.defer(() -> findByProductId(productId)
+        .flatMap(current -> Mono.<ProductEntity>error(
+          new PreconditionFailedException("If-Match does not match productId: " + productId)))
+        .switchIfEmpty(Mono.error(() -> notFound(productId)))))
+      .doOnNext(entity -> {
+        evict(productId);
+        LOG.debug("patchProduct: updated productId: {} to version: {}", productId, entity.getVersion());
+      });
+  }
+
+  /**
+   * Whether a create through the write-behind buffer would duplicate a product: a pending
+   * write of the productId decides, the productId index otherwise. The buffer itself rejects
+   * a second pending create, so only creates racing the flush of another get past both.
+   */
+  private Mono<Boolean> exists(int productId) {
+    return Mono.defer(() -> {
+      ProductWrite write = writeBuffer.pending(productId);
+      return write != null ? Mono.just(write.getInsert() != null) : persistence.existsByProductId(productId);
+    });
+  }
+
+  /**
+   * Pending writes of the write-behind buffer take precedence over the database.
+   */
+  private Mono<ProductEntity> findByProductId(int productId) {
+    if (writeBuffer != null) {
+      ProductWrite write = writeBuffer.pending(productId);
+      if (write != null) {
+        return Mono.justOrEmpty(write.getInsert());
+      }
+    }
+    return persistence.findByProductId(productId);
+  }
+
+  /**
+   * Reads the stored payload only, falling back to the full document if it has none yet.
+   */
+  private Mono<ProductEntity> findPayloadByProductId(int productId) {
+    if (writeBuffer != null && writeBuffer.pending(productId) != null) {
+      return findByProductId(productId);
+    }
+    return persistence.findPayloadByProductId(productId)
+      .flatMap(entity -> entity.getPayload() != null ? Mono.just(entity) : persistence.findByProductId(productId));
+  }
+
+  private ProductEntity toEntity(Product api) {
+    ProductEntity entity = mapper.apiToEntity(api);
+    if (storedPayload) {
+      entity.setPayload(mapper.entityToPayload(entity));
+    }
+    return entity;
+  }
+
+  /**
+   * The stored payload has no serviceAddress. Parsers merge concatenated messages, so the
+   * encoded field is appended; as its field number is the highest, the result is the same
+   * bytes Product.toByteArray() produces.
+   */
+  private byte[] withServiceAddress(byte[] payload) {
+    byte[] field = serviceAddressField();
+    byte[] body = Arrays.copyOf(payload, payload.length + field.length);
+    System.arraycopy(field, 0, body, payload.length, field.length);
+    return body;
+  }
+
+  /**
+   * The encoded serviceAddress field of Product.
+   */
+  private byte[] serviceAddressField() {
+    byte[] field = serviceAddressField;
+    if (field == null) {
+      field = Product.newBuilder().setServiceAddress(serviceUtil.getServiceAddress()).build().toByteArray();
+      serviceAddressField = field;
+    }
+    return field;
+  }
+
+  /**
+   * Bulk inserts bypass the write-behind buffer, pending writes are applied first to keep
+   * the order of writes to the same productId.
+   */
+  private Mono<Void> flushPendingWrites() {
+    return writeBuffer != null ? writeBuffer.flush() : Mono.empty();
+  }
+
+  /**
+   * The 404 of GET /product/{productId}, returned as a value in the fast error mode for
+   * Protobuf.
+   */
+  private Mono<ResponseEntity<byte[]>> productNotFound(int productId, ProductFormat format) {
+    return errorResponses != null && format == ProductFormat.PROTOBUF
+      ? Mono.just(fastError(errorResponses.notFound(productId)))
+      : Mono.error(notFound(productId));
+  }
+
+  private ResponseEntity<byte[]> fastError(ResponseEntity<byte[]> response) {
+    return unifiedFormats != null
+      ? varied(ResponseEntity.status(response.getStatusCode()).headers(response.getHeaders())).body(response.getBody())
+      : response;
+  }
+
+  private NotFoundException notFound(int productId) {
+    return new NotFoundException("No product found for productId: " + productId);
+  }
+
+  private void evict(int productId) {
+    cache.invalidate(productId);
+    if (payloadCache != null) {
+      payloadCache.invalidate(productId);
+    }
   }
 }
@@ -0,0 +1,228 @@
+package com.luca.core.product;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.luca.core.product.web.compression.CompressionFilter;
+import com.luca.core.product.web.compression.ContentCoding;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.buffer.PooledByteBufAllocator;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.server.adapter.DefaultServerWebExchange;
+import org.springframework.web.server.i18n.AcceptHeaderLocaleContextResolver;
+import org.springframework.web.server.session.DefaultWebSessionManager;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+class CompressionFilterTests {
+
+  private static final byte[] LARGE = products(100);
+
+  private static final byte[] SMALL = products(1);
+
+  private final NettyDataBufferFactory nettyBufferFactory = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+  private final CompressionFilter filter = new CompressionFilter(registry, 1024,
+    List.of(ContentCoding.ZSTD, ContentCoding.GZIP, ContentCoding.DEFLATE),
+    Map.of(ContentCoding.GZIP, 6, ContentCoding.DEFLATE, 6, ContentCoding.ZSTD, 3));
+
+  @Test
+  void negotiatesCodings() {
+    assertEquals(ContentCoding.GZIP, filter.negotiate(List.of("gzip, deflate, br")));
+    assertEquals(ContentCoding.ZSTD, filter.negotiate(List.of("gzip;q=0.5, zstd")));
+    assertEquals(ContentCoding.DEFLATE, filter.negotiate(List.of("gzip;q=0.5", "deflate")));
+    assertEquals(ContentCoding.ZSTD, filter.negotiate(List.of("*")));
+    assertEquals(ContentCoding.GZIP, filter.negotiate(List.of("zstd;q=0, *;q=0.1")));
+    assertNull(filter.negotiate(List.of("identity")));
+    assertNull(filter.negotiate(List.of("br, *;q=0")));
+    assertNull(filter.negotiate(null));
+  }
+
+  @Test
+  void compressesLargeResponsesWhole() throws IOException {
+    ServerWebExchange exchange = exchange(MockServerHttpRequest.get("/products").header(HttpHeaders.ACCEPT_ENCODING, "gzip").build());
+    filter.filter(exchange, writing(Mono.just(LARGE))).block();
+
+    MockServerHttpResponse response = (MockServerHttpResponse) exchange.getResponse();
+    byte[] body = body(response);
+    assertEquals("gzip", response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    assertEquals(body.length, response.getHeaders().getContentLength());
+    assertTrue(response.getHeaders().getVary().contains(HttpHeaders.ACCEPT_ENCODING));
+    assertArrayEquals(LARGE, new GZIPInputStream(new ByteArrayInputStream(body)).readAllBytes());
+
+    double ratio = registry.get("product.compression.ratio").tag("coding", "gzip").tag("direction", "response").summary().mean();
+    assertEquals((double) LARGE.length / body.length, ratio, 1e-9);
+    assertEquals(6, registry.get("product.compression.level").tag("coding", "gzip").gauge().value());
+  }
+
+  @Test
+  void compressesLargeResponsesWholeInEachCoding() throws IOException {
+    for (ContentCoding coding : ContentCoding.values()) {
+      ServerWebExchange exchange = exchange(MockServerHttpRequest.get("/products")
+        .header(HttpHeaders.ACCEPT_ENCODING, coding.token()).build());
+      filter.filter(exchange, writing(Mono.just(LARGE))).block();
+
+      MockServerHttpResponse response = (MockServerHttpResponse) exchange.getResponse();
+      byte[] body = body(response);
+      assertEquals(coding.token(), response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+      assertEquals(body.length, response.getHeaders().getContentLength());
+      assertArrayEquals(LARGE, decompress(coding, body), coding.token());
+    }
+  }
+
+  @Test
+  void sendsSmallResponsesRaw() {
+    ServerWebExchange exchange = exchange(MockServerHttpRequest.get("/product/1").header(HttpHeaders.ACCEPT_ENCODING, "gzip").build());
+    filter.filter(exchange, writing(Mono.just(SMALL))).block();
+
+    MockServerHttpResponse response = (MockServerHttpResponse) exchange.getResponse();
+    assertNull(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    assertTrue(response.getHeaders().getVary().contains(HttpHeaders.ACCEPT_ENCODING));
+    assertArrayEquals(SMALL, body(response));
+  }
+
+  @Test
+  void compressesStreams() throws IOException {
+    for (ContentCoding coding : ContentCoding.values()) {
+      ServerWebExchange exchange = exchange(MockServerHttpRequest.get("/products/stream")
+        .header(HttpHeaders.ACCEPT_ENCODING, coding.token()).build());
+      filter.filter(exchange, writing(Flux.just(SMALL, LARGE, SMALL))).block();
+
+      MockServerHttpResponse response = (MockServerHttpResponse) exchange.getResponse();
+      assertEquals(coding.token(), response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+      assertEquals(-1, response.getHeaders().getContentLength());
+      ByteArrayOutputStream expected = new ByteArrayOutputStream();
+      expected.writeBytes(SMALL);
+      expected.writeBytes(LARGE);
+      expected.writeBytes(SMALL);
+      assertArrayEquals(expected.toByteArray(), decompress(coding, body(response)), coding.token());
+    }
+  }
+
+  @Test
+  void compressesFlushedStreams() throws IOException {
+    ServerWebExchange exchange = exchange(MockServerHttpRequest.get("/products/stream")
+      .header(HttpHeaders.ACCEPT_ENCODING, "gzip").build());
+    filter.filter(exchange, decorated -> decorated.getResponse().writeAndFlushWith(Flux.just(LARGE, LARGE)
+      .map(bytes -> Mono.just(wrap(decorated.getResponse().bufferFactory(), bytes))))).block();
+
+    MockServerHttpResponse response = (MockServerHttpResponse) exchange.getResponse();
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    expected.writeBytes(LARGE);
+    expected.writeBytes(LARGE);
+    assertArrayEquals(expected.toByteArray(), decompress(ContentCoding.GZIP, body(response)));
+    assertEquals(1, registry.get("product.compression.time").tag("direction", "response").timer().count());
+  }
+
+  @Test
+  void decompressesRequests() throws IOException {
+    ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+    try (GZIPOutputStream output = new GZIPOutputStream(gzipped)) {
+      output.write(LARGE);
+    }
+
+    ServerWebExchange exchange = exchange(MockServerHttpRequest.post("/products")
+      .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+      .contentLength(gzipped.size())
+      .body(Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(gzipped.toByteArray()))));
+    AtomicReference<HttpHeaders> headers = new AtomicReference<>();
+    AtomicReference<byte[]> body = new AtomicReference<>();
+    filter.filter(exchange, decorated -> {
+      headers.set(decorated.getRequest().getHeaders());
+      return DataBufferUtils.join(decorated.getRequest().getBody()).doOnNext(buffer -> body.set(bytes(buffer))).then();
+    }).block();
+
+    assertArrayEquals(LARGE, body.get());
+    assertFalse(headers.get().containsKey(HttpHeaders.CONTENT_ENCODING));
+    assertEquals(-1, headers.get().getContentLength());
+    assertEquals(gzipped.size(), registry.get("product.compression.bytes")
+      .tag("direction", "request").tag("state", "compressed").counter().count());
+  }
+
+  @Test
+  void rejectsUnsupportedRequestCodings() {
+    ServerWebExchange exchange = exchange(MockServerHttpRequest.post("/products").header(HttpHeaders.CONTENT_ENCODING, "br").build());
+    filter.filter(exchange, decorated -> Mono.error(new AssertionError("Not filtered"))).block();
+
+    assertEquals(HttpStatus.UNSUPPORTED_MEDIA_TYPE, exchange.getResponse().getStatusCode());
+    assertEquals("zstd, gzip, deflate", exchange.getResponse().getHeaders().getFirst(HttpHeaders.ACCEPT_ENCODING));
+  }
+
+  /**
+   * With the buffers of the server, which the filter passes to the codecs without copying.
+   */
+  private ServerWebExchange exchange(MockServerHttpRequest request) {
+    return new DefaultServerWebExchange(request, new MockServerHttpResponse(nettyBufferFactory),
+      new DefaultWebSessionManager(), ServerCodecConfigurer.create(), new AcceptHeaderLocaleContextResolver());
+  }
+
+  private static WebFilterChain writing(Mono<byte[]> body) {
+    return exchange -> exchange.getResponse().writeWith(body.map(bytes -> wrap(exchange.getResponse().bufferFactory(), bytes)));
+  }
+
+  private static WebFilterChain writing(Flux<byte[]> body) {
+    return exchange -> exchange.getResponse().writeWith(body.map(bytes -> wrap(exchange.getResponse().bufferFactory(), bytes)));
+  }
+
+  private static DataBuffer wrap(DataBufferFactory bufferFactory, byte[] bytes) {
+    return bufferFactory.allocateBuffer(bytes.length).write(bytes);
+  }
+
+  private static byte[] body(MockServerHttpResponse response) {
+    return DataBufferUtils.join(response.getBody()).map(CompressionFilterTests::bytes).block();
+  }
+
+  private static byte[] bytes(DataBuffer buffer) {
+    try {
+      byte[] bytes = new byte[buffer.readableByteCount()];
+      buffer.read(bytes);
+      return bytes;
+    } finally {
+      DataBufferUtils.release(buffer);
+    }
+  }
+
+  private static byte[] decompress(ContentCoding coding, byte[] body) throws IOException {
+    InputStream input = new ByteArrayInputStream(body);
+    try (InputStream decompressed = switch (coding) {
+      case GZIP -> new GZIPInputStream(input);
+      case DEFLATE -> new InflaterInputStream(input);
+      case ZSTD -> new ZstdInputStream(input);
+    }) {
+      return decompressed.readAllBytes();
+    }
+  }
+
+  private static byte[] products(int count) {
+    StringBuilder products = new StringBuilder();
+    for (int i = 1; i <= count; i++) {
+      products.append("{\"productId\":").append(i).append(",\"name\":\"Stainless steel kettle 1.7 l\",\"weight\":1250}\n");
+    }
+    return products.toString().getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,98 @@
+package com.luca.core.product;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.luca.core.product.mapper.ProductDtoMapper;
+import com.luca.core.product.web.codec.ProductFormat;
+import com.luca.core.product.web.codec.ProtobufCodecConfiguration;
+import com.luca.core.product.web.codec.UnifiedFormats;
+import com.luca.core.product.web.exceptions.NotFoundException;
+import com.luca.error.protobuf.ErrorInfoProto.ErrorInfo;
+import com.luca.product.protobuf.ProductProto.Product;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.reactive.config.EnableWebFlux;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+import reactor.core.publisher.Mono;
+
+/**
+ * Content negotiation of the error bodies written by GlobalControllerExceptionHandler.
+ */
+class ErrorNegotiationTests {
+
+  private static final MediaType APPLICATION_PROTOBUF = ProductFormat.PROTOBUF.mediaType();
+
+  @Test
+  void returnsProtobufErrorsWhateverTheAccept() throws Exception {
+    byte[] body = client(null).get()
+      .uri("/product/1")
+      .accept(MediaType.APPLICATION_JSON, APPLICATION_PROTOBUF)
+      .exchange()
+      .expectStatus().isNotFound()
+      .expectHeader().contentType(APPLICATION_PROTOBUF)
+      .expectBody().returnResult().getResponseBody();
+
+    ErrorInfo error = ErrorInfo.parseFrom(body);
+    assertEquals(404, error.getHttpStatus());
+    assertEquals("/product/1", error.getPath());
+  }
+
+  @Test
+  void returnsNegotiatedErrorsInTheUnifiedMode() {
+    UnifiedFormats formats = new UnifiedFormats(Mappers.getMapper(ProductDtoMapper.class), new ObjectMapper(),
+      new SimpleMeterRegistry());
+
+    byte[] body = client(formats).get()
+      .uri("/product/1")
+      .accept(MediaType.APPLICATION_JSON, APPLICATION_PROTOBUF)
+      .exchange()
+      .expectStatus().isNotFound()
+      .expectHeader().contentType(MediaType.APPLICATION_JSON)
+      .expectHeader().valueEquals(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+      .expectBody().returnResult().getResponseBody();
+
+    assertTrue(new String(body, StandardCharsets.UTF_8).contains("\"httpStatus\":404"));
+  }
+
+  private static WebTestClient client(UnifiedFormats formats) {
+    AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+    context.register(WebFlux.class);
+    context.registerBean(FailingController.class);
+    WebFluxConfigurer codecs = new ProtobufCodecConfiguration(true, true, formats);
+    context.registerBean(WebFluxConfigurer.class, () -> codecs);
+    if (formats != null) {
+      context.registerBean(UnifiedFormats.class, () -> formats);
+    }
+    try {
+      // Package-private, as every @RestControllerAdvice of the service
+      context.registerBean(Class.forName("com.luca.core.product.web.errors.GlobalControllerExceptionHandler"));
+    } catch (ClassNotFoundException e) {
+      throw new IllegalStateException(e);
+    }
+    context.refresh();
+    return WebTestClient.bindToApplicationContext(context).build();
+  }
+
+  @EnableWebFlux
+  static class WebFlux {
+  }
+
+  @RestController
+  static class FailingController {
+
+    @GetMapping(value = "/product/{productId}", produces = "application/x-protobuf")
+    Mono<Product> getProduct(@PathVariable int productId) {
+      return Mono.error(new NotFoundException("No product found for productId: " + productId));
+    }
+  }
+}
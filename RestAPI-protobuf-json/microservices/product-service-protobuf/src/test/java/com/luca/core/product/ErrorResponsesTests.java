@@ -0,0 +1,89 @@
+package com.luca.core.product;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.luca.core.product.web.errors.ErrorResponses;
+import com.luca.error.protobuf.ErrorInfoProto.ErrorInfo;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+class ErrorResponsesTests {
+
+  private static final ZoneId ZONE = ZoneId.of("Europe/Rome");
+
+  @Test
+  void notFoundMatchesTheExceptionHandler() throws InvalidProtocolBufferException {
+    Instant now = Instant.parse("2024-03-01T10:15:30.123Z");
+    ErrorResponses errorResponses = new ErrorResponses(Clock.fixed(now, ZONE));
+
+    for (int productId : new int[] {1, 9, 10, 13, 999_999, Integer.MAX_VALUE}) {
+      ResponseEntity<byte[]> response = errorResponses.notFound(productId);
+
+      assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+      assertEquals(ErrorInfo.newBuilder()
+        .setTimestamp(ZonedDateTime.ofInstant(Instant.parse("2024-03-01T10:15:30Z"), ZONE).toString())
+        .setPath("/product/" + productId)
+        .setHttpStatus(404)
+        .setMessage("No product found for productId: " + productId)
+        .build(), ErrorInfo.parseFrom(response.getBody()));
+    }
+  }
+
+  @Test
+  void invalidProductIdMatchesTheExceptionHandler() throws InvalidProtocolBufferException {
+    ErrorResponses errorResponses = new ErrorResponses(Clock.fixed(Instant.EPOCH, ZONE));
+
+    for (int productId : new int[] {0, -1, -42, Integer.MIN_VALUE}) {
+      ResponseEntity<byte[]> response = errorResponses.invalidProductId(productId);
+
+      assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, response.getStatusCode());
+      ErrorInfo error = ErrorInfo.parseFrom(response.getBody());
+      assertEquals("/product/" + productId, error.getPath());
+      assertEquals(422, error.getHttpStatus());
+      assertEquals("Invalid productId: " + productId, error.getMessage());
+    }
+  }
+
+  @Test
+  void timestampAdvancesBySecond() throws InvalidProtocolBufferException {
+    MutableClock clock = new MutableClock(Instant.parse("2024-03-01T10:15:30.100Z"));
+    ErrorResponses errorResponses = new ErrorResponses(clock);
+
+    String first = ErrorInfo.parseFrom(errorResponses.notFound(1).getBody()).getTimestamp();
+    clock.now = Instant.parse("2024-03-01T10:15:30.900Z");
+    assertEquals(first, ErrorInfo.parseFrom(errorResponses.notFound(1).getBody()).getTimestamp());
+    clock.now = Instant.parse("2024-03-01T10:15:31.000Z");
+    assertEquals(ZonedDateTime.ofInstant(clock.now, ZONE).toString(),
+      ErrorInfo.parseFrom(errorResponses.notFound(1).getBody()).getTimestamp());
+  }
+
+  private static final class MutableClock extends Clock {
+
+    private Instant now;
+
+    MutableClock(Instant now) {
+      this.now = now;
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZONE;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Instant instant() {
+      return now;
+    }
+  }
+}
@@ -39,4 +39,19 @@ class MapperTests {
     assertEquals("", api2.getServiceAddress());
 
   }
-}
\ No newline at end of file
+
+  @Test
+  void storedPayloadWithServiceAddressIsTheEncodedProduct() {
+
+    ProductEntity entity = new ProductEntity(1, "n", 2);
+
+    byte[] payload = mapper.entityToPayload(entity);
+    byte[] serviceAddress = Product.newBuilder().setServiceAddress("SA").build().toByteArray();
+    byte[] body = new byte[payload.length + serviceAddress.length];
+    System.arraycopy(payload, 0, body, 0, payload.length);
+    System.arraycopy(serviceAddress, 0, body, payload.length, serviceAddress.length);
+
+    Product expected = mapper.entityToApi(entity).toBuilder().setServiceAddress("SA").build();
+    assertArrayEquals(expected.toByteArray(), body);
+  }
+}
@@ -19,6 +19,8 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import com.luca.core.product.persistence.ProductRepository;
+import com.luca.core.product.persistence.ReactiveProductRepository;
+import reactor.test.StepVerifier;
 
 @DataMongoTest
 class PersistenceTests extends MongoDbTestBase {
@@ -26,6 +28,9 @@ class PersistenceTests extends MongoDbTestBase {
   @Autowired
   private ProductRepository repository;
 
+  @Autowired
+  private ReactiveProductRepository reactiveRepository;
+
   private ProductEntity savedEntity;
 
   @BeforeEach
@@ -75,6 +80,13 @@ class PersistenceTests extends MongoDbTestBase {
     assertEqualsProduct(savedEntity, entity.get());
   }
 
+  @Test
+  void getByProductIdReactive() {
+    StepVerifier.create(reactiveRepository.findByProductId(savedEntity.getProductId()))
+      .expectNextMatches(foundEntity -> foundEntity.getId().equals(savedEntity.getId()))
+      .verifyComplete();
+  }
+
   @Test
   void duplicateError() {
     assertThrows(DuplicateKeyException.class, () -> {
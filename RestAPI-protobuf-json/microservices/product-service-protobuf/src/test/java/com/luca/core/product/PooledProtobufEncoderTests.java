@@ -0,0 +1,96 @@
+package com.luca.core.product;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.luca.core.product.web.codec.PooledProtobufEncoder;
+import com.luca.core.product.web.codec.ProtobufCodecConfiguration;
+import com.luca.core.product.web.codec.UnifiedFormats;
+import com.luca.error.protobuf.ErrorInfoProto.ErrorInfo;
+import com.luca.product.protobuf.ProductProto.Product;
+import io.netty.buffer.PooledByteBufAllocator;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.EncoderHttpMessageWriter;
+import org.springframework.http.codec.HttpMessageWriter;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+class PooledProtobufEncoderTests {
+
+  private static final MediaType PROTOBUF = MediaType.parseMediaType("application/x-protobuf");
+
+  private final NettyDataBufferFactory bufferFactory = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+
+  private final PooledProtobufEncoder encoder = new PooledProtobufEncoder();
+
+  @Test
+  void encodesValuesIntoPooledBuffers() {
+    Product product = product(1);
+    DataBuffer buffer = encoder.encodeValue(product, bufferFactory, ResolvableType.forClass(Product.class), PROTOBUF, Map.of());
+
+    assertArrayEquals(product.toByteArray(), bytes(buffer));
+  }
+
+  @Test
+  void encodesErrors() {
+    ErrorInfo error = ErrorInfo.newBuilder().setPath("/product/13").setMessage("No product found for productId: 13")
+      .setHttpStatus(404).setTimestamp("2024-01-01T00:00Z").build();
+    DataBuffer buffer = encoder.encode(Mono.just(error), bufferFactory, ResolvableType.forClass(ErrorInfo.class), PROTOBUF, Map.of())
+      .single()
+      .block();
+
+    assertArrayEquals(error.toByteArray(), bytes(buffer));
+  }
+
+  @Test
+  void delimitsStreamedMessages() throws IOException {
+    List<Product> products = List.of(product(1), product(2), Product.getDefaultInstance(), product(300));
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    for (Product product : products) {
+      product.writeDelimitedTo(expected);
+    }
+
+    ByteArrayOutputStream actual = new ByteArrayOutputStream();
+    encoder.encode(Flux.fromIterable(products), bufferFactory, ResolvableType.forClass(Product.class), PROTOBUF, Map.of())
+      .doOnNext(buffer -> actual.writeBytes(bytes(buffer)))
+      .blockLast();
+
+    assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+  }
+
+  @Test
+  void replacesTheDefaultEncoder() {
+    ServerCodecConfigurer configurer = ServerCodecConfigurer.create();
+    new ProtobufCodecConfiguration(false, true, (UnifiedFormats) null).configureHttpMessageCodecs(configurer);
+
+    HttpMessageWriter<?> writer = configurer.getWriters().stream()
+      .filter(candidate -> candidate.canWrite(ResolvableType.forClass(ErrorInfo.class), PROTOBUF))
+      .findFirst()
+      .orElseThrow();
+    assertInstanceOf(PooledProtobufEncoder.class, ((EncoderHttpMessageWriter<?>) writer).getEncoder());
+  }
+
+  private static Product product(int productId) {
+    return Product.newBuilder().setProductId(productId).setName("Product " + productId).setWeight(productId * 10)
+      .setServiceAddress("host/10.0.0.1:7001").build();
+  }
+
+  private static byte[] bytes(DataBuffer buffer) {
+    try {
+      byte[] bytes = new byte[buffer.readableByteCount()];
+      buffer.read(bytes);
+      return bytes;
+    } finally {
+      DataBufferUtils.release(buffer);
+    }
+  }
+}
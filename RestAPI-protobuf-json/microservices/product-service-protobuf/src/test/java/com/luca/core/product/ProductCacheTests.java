@@ -0,0 +1,50 @@
+package com.luca.core.product;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.luca.core.product.cache.ProductCache;
+import com.luca.core.product.persistence.ProductEntity;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+class ProductCacheTests {
+
+  private final AtomicInteger loads = new AtomicInteger();
+
+  private final ProductCache cache = new ProductCache(true, 100, Duration.ofMinutes(1), new SimpleMeterRegistry());
+
+  @Test
+  void hitDoesNotLoadAgain() {
+    assertEquals(1, cache.get(1, this::load).block().getProductId());
+    assertEquals(1, cache.get(1, this::load).block().getProductId());
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  void invalidateForcesReload() {
+    cache.get(1, this::load).block();
+    cache.invalidate(1);
+    cache.get(1, this::load).block();
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  void emptyResultIsNotCached() {
+    assertNull(cache.get(13, id -> {
+      loads.incrementAndGet();
+      return Mono.empty();
+    }).block());
+    cache.get(13, this::load).block();
+    assertEquals(2, loads.get());
+  }
+
+  private Mono<ProductEntity> load(int productId) {
+    return Mono.fromSupplier(() -> {
+      loads.incrementAndGet();
+      return new ProductEntity(productId, "n", 1);
+    });
+  }
+}
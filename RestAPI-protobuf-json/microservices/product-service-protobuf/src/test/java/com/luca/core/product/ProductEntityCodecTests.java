@@ -0,0 +1,109 @@
+package com.luca.core.product;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.luca.core.product.persistence.KeyedLayoutConfiguration;
+import com.luca.core.product.persistence.ProductEntity;
+import com.luca.core.product.persistence.ProductEntityCodec;
+import com.luca.core.product.persistence.ProductLayout;
+import java.nio.ByteBuffer;
+import java.util.List;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.Document;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+class ProductEntityCodecTests {
+
+  @Test
+  void classicDocumentsMatchTheConverter() {
+    MappingMongoConverter converter = converter(new MongoCustomConversions(List.of()));
+    ProductEntityCodec codec = new ProductEntityCodec(ProductLayout.CLASSIC);
+
+    ProductEntity entity = entity();
+    Document written = new Document();
+    converter.write(entity, written);
+    assertEntity(entity, decode(codec, encode(new DocumentCodec(), written)));
+
+    Document encoded = decode(new DocumentCodec(), encode(codec, entity));
+    assertEquals(new ObjectId(entity.getId()), encoded.get("_id"));
+    assertEquals(7, encoded.get("productId"));
+    assertEntity(entity, converter.read(ProductEntity.class, encoded));
+  }
+
+  @Test
+  void keyedDocumentsMatchTheConverter() {
+    MappingMongoConverter converter = converter(new KeyedLayoutConfiguration().mongoCustomConversions());
+    ProductEntityCodec codec = new ProductEntityCodec(ProductLayout.KEYED);
+
+    ProductEntity entity = entity();
+    Document written = new Document();
+    converter.write(entity, written);
+    assertEntity(entity, decode(codec, encode(new DocumentCodec(), written)));
+
+    Document encoded = decode(new DocumentCodec(), encode(codec, entity));
+    assertEquals(7, encoded.get("_id"));
+    assertEquals(new ObjectId(entity.getId()), encoded.get("oid"));
+    assertFalse(encoded.containsKey("productId"));
+    assertEntity(entity, converter.read(ProductEntity.class, encoded));
+  }
+
+  @Test
+  void absentFieldsAreOmitted() {
+    ProductEntityCodec codec = new ProductEntityCodec(ProductLayout.CLASSIC);
+
+    ProductEntity entity = new ProductEntity(1, null, 0);
+    Document encoded = decode(new DocumentCodec(), encode(codec, entity));
+    assertEquals(new Document("productId", 1).append("weight", 0), encoded);
+
+    assertFalse(codec.documentHasId(entity));
+    codec.generateIdIfAbsentFromDocument(entity);
+    assertTrue(ObjectId.isValid(entity.getId()));
+  }
+
+  private static ProductEntity entity() {
+    ProductEntity entity = new ProductEntity(7, "n", 3);
+    entity.setId(new ObjectId().toHexString());
+    entity.setVersion(2);
+    entity.setPayload(new byte[] {1, 2});
+    return entity;
+  }
+
+  private static void assertEntity(ProductEntity expected, ProductEntity actual) {
+    assertEquals(expected.getId(), actual.getId());
+    assertEquals(expected.getVersion(), actual.getVersion());
+    assertEquals(expected.getProductId(), actual.getProductId());
+    assertEquals(expected.getName(), actual.getName());
+    assertEquals(expected.getWeight(), actual.getWeight());
+    assertArrayEquals(expected.getPayload(), actual.getPayload());
+  }
+
+  private static MappingMongoConverter converter(MongoCustomConversions conversions) {
+    MongoMappingContext mappingContext = new MongoMappingContext();
+    mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+    MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+    converter.setCustomConversions(conversions);
+    converter.afterPropertiesSet();
+    return converter;
+  }
+
+  private static <T> byte[] encode(Codec<T> codec, T value) {
+    BasicOutputBuffer buffer = new BasicOutputBuffer();
+    codec.encode(new BsonBinaryWriter(buffer), value, EncoderContext.builder().build());
+    return buffer.toByteArray();
+  }
+
+  private static <T> T decode(Codec<T> codec, byte[] bson) {
+    return codec.decode(new BsonBinaryReader(ByteBuffer.wrap(bson)), DecoderContext.builder().build());
+  }
+}
@@ -7,20 +7,37 @@ import static org.springframework.http.MediaType.APPLICATION_JSON;
 import static org.springframework.http.MediaType.APPLICATION_PROTOBUF;
 import static reactor.core.publisher.Mono.just;
 
+import com.google.protobuf.FieldMask;
 import com.google.protobuf.InvalidProtocolBufferException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
 import com.luca.product.protobuf.ProductProto.Product;
+import com.luca.product.protobuf.ProductProto.ProductCreateResult;
+import com.luca.product.protobuf.ProductProto.ProductImportSummary;
+import com.luca.product.protobuf.ProductProto.ProductList;
+import com.luca.product.protobuf.ProductProto.ProductPage;
+import com.luca.product.protobuf.ProductProto.ProductPatch;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import com.luca.error.protobuf.ErrorInfoProto.ErrorInfo;
 import com.luca.core.product.persistence.ProductRepository;
-
-@SpringBootTest(webEnvironment = RANDOM_PORT)
+import com.luca.core.product.web.filters.MongoRoundTripFilter;
+
+// deleteAll() bypasses the caches and the lookup filter, which would otherwise keep
+// products of earlier tests visible, or their productIds missing
+@SpringBootTest(webEnvironment = RANDOM_PORT, properties = {
+  "app.cache.enabled=false",
+  "app.cache.payload.store=none",
+  "app.lookup-filter.enabled=false"})
 class ProductServiceApplicationTests extends MongoDbTestBase {
 
   @Autowired private WebTestClient client;
@@ -46,6 +63,192 @@ class ProductServiceApplicationTests extends MongoDbTestBase {
 
     assertEquals(productId, product.getProductId());
   }
+
+  @Test
+  void getProductNotModified() {
+
+    int productId = 1;
+
+    postAndVerifyProduct(productId, OK);
+
+    String eTag = client.get()
+      .uri("/product/" + productId)
+      .accept(APPLICATION_PROTOBUF)
+      .exchange()
+      .expectStatus().isOk()
+      .returnResult(byte[].class)
+      .getResponseHeaders().getETag();
+    assertNotNull(eTag);
+
+    client.get()
+      .uri("/product/" + productId)
+      .accept(APPLICATION_PROTOBUF)
+      .header(HttpHeaders.IF_NONE_MATCH, eTag)
+      .exchange()
+      .expectStatus().isNotModified()
+      .expectHeader().valueEquals(HttpHeaders.ETAG, eTag)
+      .expectBody().isEmpty();
+  }
+
+  @Test
+  void createProductsReportsDuplicatesPerItem() throws InvalidProtocolBufferException {
+
+    postAndVerifyProduct(1, OK);
+
+    ProductList products = ProductList.newBuilder()
+            .addProducts(Product.newBuilder().setProductId(1).setName("Name 1").setWeight(1))
+            .addProducts(Product.newBuilder().setProductId(2).setName("Name 2").setWeight(2))
+            .addProducts(Product.newBuilder().setProductId(2).setName("Name 2").setWeight(2))
+            .build();
+
+    byte[] a = client.post()
+            .uri("/products")
+            .body(just(products), ProductList.class)
+            .accept(APPLICATION_PROTOBUF)
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody().returnResult().getResponseBody();
+    ProductCreateResult result = ProductCreateResult.parseFrom(a);
+
+    assertEquals(3, result.getItemsCount());
+    assertEquals(ProductCreateResult.Status.DUPLICATE, result.getItems(0).getStatus());
+    assertEquals(ProductCreateResult.Status.CREATED, result.getItems(1).getStatus());
+    assertEquals(ProductCreateResult.Status.DUPLICATE, result.getItems(2).getStatus());
+    assertEquals(2, repository.count());
+
+    getAndVerifyProduct(2, OK);
+  }
+
+  @Test
+  void getProductsReportsMissingIds() throws InvalidProtocolBufferException {
+
+    postAndVerifyProduct(1, OK);
+    postAndVerifyProduct(3, OK);
+
+    byte[] a = client.get()
+            .uri("/products?ids=3,2,1")
+            .accept(APPLICATION_PROTOBUF)
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody().returnResult().getResponseBody();
+    ProductList products = ProductList.parseFrom(a);
+
+    assertEquals(2, products.getProductsCount());
+    assertEquals(3, products.getProducts(0).getProductId());
+    assertEquals(1, products.getProducts(1).getProductId());
+    assertEquals(List.of(2), products.getMissingProductIdsList());
+  }
+
+  @Test
+  void importProductsFromDelimitedStream() throws IOException {
+
+    postAndVerifyProduct(1, OK);
+
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    for (int productId = 1; productId <= 5; productId++) {
+      Product.newBuilder().setProductId(productId).setName("Name " + productId).setWeight(productId)
+              .build().writeDelimitedTo(body);
+    }
+
+    byte[] a = client.post()
+            .uri("/products/import")
+            .contentType(APPLICATION_PROTOBUF)
+            .bodyValue(body.toByteArray())
+            .accept(APPLICATION_PROTOBUF)
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody().returnResult().getResponseBody();
+    ProductImportSummary summary = ProductImportSummary.parseFrom(a);
+
+    assertEquals(5, summary.getReceived());
+    assertEquals(4, summary.getCreated());
+    assertEquals(1, summary.getDuplicates());
+    assertEquals(1, summary.getFailures(0).getProductId());
+    assertEquals("", summary.getError());
+    assertEquals(5, repository.count());
+  }
+
+  @Test
+  void streamProductsAsDelimitedMessages() throws IOException {
+
+    postAndVerifyProduct(2, OK);
+    postAndVerifyProduct(1, OK);
+
+    byte[] a = client.get()
+            .uri("/products/stream")
+            .accept(APPLICATION_PROTOBUF)
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody().returnResult().getResponseBody();
+
+    ByteArrayInputStream in = new ByteArrayInputStream(a);
+    assertEquals(1, Product.parseDelimitedFrom(in).getProductId());
+    assertEquals(2, Product.parseDelimitedFrom(in).getProductId());
+    assertNull(Product.parseDelimitedFrom(in));
+  }
+
+  @Test
+  void patchProductWithFieldMask() throws InvalidProtocolBufferException {
+
+    int productId = 1;
+
+    postAndVerifyProduct(productId, OK);
+
+    String eTag = client.get()
+      .uri("/product/" + productId)
+      .accept(APPLICATION_PROTOBUF)
+      .exchange()
+      .expectStatus().isOk()
+      .returnResult(byte[].class)
+      .getResponseHeaders().getETag();
+
+    ProductPatch patch = ProductPatch.newBuilder()
+      .setProduct(Product.newBuilder().setName("ignored").setWeight(7))
+      .setUpdateMask(FieldMask.newBuilder().addPaths("weight"))
+      .build();
+
+    byte[] body = client.patch()
+      .uri("/product/" + productId)
+      .contentType(APPLICATION_PROTOBUF)
+      .accept(APPLICATION_PROTOBUF)
+      .header(HttpHeaders.IF_MATCH, eTag)
+      .bodyValue(patch.toByteArray())
+      .exchange()
+      .expectStatus().isOk()
+      .expectBody().returnResult().getResponseBody();
+    Product product = Product.parseFrom(body);
+    assertEquals(7, product.getWeight());
+    assertEquals("Name " + productId, product.getName());
+
+    // The tag the patch was based on is stale now
+    client.patch()
+      .uri("/product/" + productId)
+      .contentType(APPLICATION_PROTOBUF)
+      .accept(APPLICATION_PROTOBUF)
+      .header(HttpHeaders.IF_MATCH, eTag)
+      .bodyValue(patch.toByteArray())
+      .exchange()
+      .expectStatus().isEqualTo(PRECONDITION_FAILED);
+  }
+
+  @Test
+  void pageThroughProducts() throws InvalidProtocolBufferException {
+
+    for (int productId = 1; productId <= 3; productId++) {
+      postAndVerifyProduct(productId, OK);
+    }
+
+    ProductPage first = getPage("/products/page?size=2");
+    assertEquals(2, first.getProductsCount());
+    assertEquals(1, first.getProducts(0).getProductId());
+    assertFalse(first.getNextPageToken().isEmpty());
+
+    ProductPage last = getPage("/products/page?size=2&token=" + first.getNextPageToken());
+    assertEquals(1, last.getProductsCount());
+    assertEquals(3, last.getProducts(0).getProductId());
+    assertEquals("", last.getNextPageToken());
+  }
+
   @Test
   void duplicateError() throws InvalidProtocolBufferException {
 
@@ -81,6 +284,28 @@ class ProductServiceApplicationTests extends MongoDbTestBase {
     deleteAndVerifyProduct(productId, OK);
   }
 
+  @Test
+  void singleRoundTripPerRequest() {
+
+    int productId = 1;
+
+    postAndVerifyProduct(productId, OK)
+      .consumeWith(result -> assertEquals("1", result.getResponseHeaders().getFirst(MongoRoundTripFilter.HEADER)));
+
+    client.get()
+      .uri("/product/" + productId)
+      .accept(APPLICATION_PROTOBUF)
+      .exchange()
+      .expectStatus().isOk()
+      .expectHeader().valueEquals(MongoRoundTripFilter.HEADER, "1");
+
+    client.delete()
+      .uri("/product/" + productId)
+      .exchange()
+      .expectStatus().isOk()
+      .expectHeader().valueEquals(MongoRoundTripFilter.HEADER, "1");
+  }
+
   @Test
   void getProductInvalidParameterString() throws InvalidProtocolBufferException {
 
@@ -142,6 +367,16 @@ class ProductServiceApplicationTests extends MongoDbTestBase {
             .expectBody();
   }
 
+  private ProductPage getPage(String uri) throws InvalidProtocolBufferException {
+    byte[] a = client.get()
+            .uri(uri)
+            .accept(APPLICATION_PROTOBUF)
+            .exchange()
+            .expectStatus().isOk()
+            .expectBody().returnResult().getResponseBody();
+    return ProductPage.parseFrom(a);
+  }
+
   private WebTestClient.BodyContentSpec postAndVerifyProduct(int productId, HttpStatus expectedStatus) {
 
     Product product = Product.newBuilder()
@@ -0,0 +1,93 @@
+package com.luca.core.product;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.luca.core.product.mapper.ProductMapper;
+import com.luca.core.product.mapper.ProductTranscoder;
+import com.luca.core.product.persistence.ProductEntity;
+import com.luca.core.product.persistence.ProductEntityCodec;
+import com.luca.core.product.persistence.ProductLayout;
+import com.luca.product.protobuf.ProductProto.Product;
+import java.util.List;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+class ProductTranscoderTests {
+
+  private static final byte[] SERVICE_ADDRESS_FIELD =
+    Product.newBuilder().setServiceAddress("host/10.0.0.1:7001").build().toByteArray();
+
+  private final ProductMapper mapper = Mappers.getMapper(ProductMapper.class);
+
+  @Test
+  void transcodesBothLayouts() {
+    for (ProductLayout layout : ProductLayout.values()) {
+      ProductTranscoder transcoder = new ProductTranscoder(layout);
+      ProductEntity entity = entity(123456, "Kettle \u00e9\u6c34", -5);
+      RawBsonDocument document = new RawBsonDocument(entity, new ProductEntityCodec(layout));
+
+      assertArrayEquals(expected(entity), transcoder.toProduct(document, SERVICE_ADDRESS_FIELD), layout.name());
+      assertEquals(entity.getId(), transcoder.documentId(document));
+      assertEquals(entity.getVersion(), transcoder.version(document));
+    }
+  }
+
+  @Test
+  void transcodesConverterDocuments() {
+    MongoMappingContext mappingContext = new MongoMappingContext();
+    MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+    converter.setCustomConversions(new MongoCustomConversions(List.of()));
+    converter.afterPropertiesSet();
+
+    ProductEntity entity = entity(7, "n", 3);
+    Document written = new Document();
+    converter.write(entity, written);
+    RawBsonDocument document = new RawBsonDocument(written, new DocumentCodec());
+
+    ProductTranscoder transcoder = new ProductTranscoder(ProductLayout.CLASSIC);
+    assertArrayEquals(expected(entity), transcoder.toProduct(document, SERVICE_ADDRESS_FIELD));
+    assertEquals(entity.getId(), transcoder.documentId(document));
+  }
+
+  @Test
+  void defaultValuesAreOmitted() {
+    ProductEntity entity = entity(1, null, 0);
+    RawBsonDocument document = new RawBsonDocument(entity, new ProductEntityCodec(ProductLayout.CLASSIC));
+
+    Product product = Product.newBuilder().setProductId(1).setServiceAddress("host/10.0.0.1:7001").build();
+    assertArrayEquals(product.toByteArray(),
+      new ProductTranscoder(ProductLayout.CLASSIC).toProduct(document, SERVICE_ADDRESS_FIELD));
+  }
+
+  @Test
+  void storedPayloadIsCopied() {
+    ProductEntity entity = entity(7, "n", 3);
+    entity.setPayload(mapper.entityToPayload(entity));
+    entity.setName("stale");
+    RawBsonDocument document = new RawBsonDocument(entity, new ProductEntityCodec(ProductLayout.CLASSIC));
+
+    Product product = Product.newBuilder().setProductId(7).setName("n").setWeight(3)
+      .setServiceAddress("host/10.0.0.1:7001").build();
+    assertArrayEquals(product.toByteArray(),
+      new ProductTranscoder(ProductLayout.CLASSIC).toProduct(document, SERVICE_ADDRESS_FIELD));
+  }
+
+  private byte[] expected(ProductEntity entity) {
+    return mapper.entityToApi(entity).toBuilder().setServiceAddress("host/10.0.0.1:7001").build().toByteArray();
+  }
+
+  private static ProductEntity entity(int productId, String name, int weight) {
+    ProductEntity entity = new ProductEntity(productId, name, weight);
+    entity.setId(new ObjectId().toHexString());
+    entity.setVersion(4);
+    return entity;
+  }
+}
@@ -0,0 +1,140 @@
+package com.luca.core.product;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.luca.core.product.persistence.ProductEntity;
+import com.luca.core.product.persistence.ProductPersistence;
+import com.luca.core.product.persistence.ProductWrite;
+import com.luca.core.product.persistence.ProductWriteBuffer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+class ProductWriteBufferTests {
+
+  private final List<List<ProductWrite>> flushed = new ArrayList<>();
+
+  private final List<Integer> failed = new ArrayList<>();
+
+  private final ProductPersistence persistence = mock(ProductPersistence.class);
+
+  // Flushes only when asked to
+  private final ProductWriteBuffer buffer = new ProductWriteBuffer(
+    Duration.ofHours(1), 100, Duration.ofSeconds(5), persistence, new SimpleMeterRegistry());
+
+  @BeforeEach
+  void setup() {
+    when(persistence.writeOrdered(any())).thenAnswer(invocation -> {
+      List<ProductWrite> writes = new ArrayList<>(invocation.getArgument(0));
+      flushed.add(writes);
+      // Reject every create of productId 13
+      for (int i = 0; i < writes.size(); i++) {
+        if (writes.get(i).getProductId() == 13 && writes.get(i).getInsert() != null) {
+          return Mono.just(i);
+        }
+      }
+      return Mono.just(-1);
+    });
+    buffer.onFailedWrite(failed::add);
+    buffer.start();
+  }
+
+  @AfterEach
+  void teardown() {
+    buffer.stop();
+  }
+
+  @Test
+  void pendingWritesAreVisibleUntilFlushed() {
+    assertTrue(buffer.create(new ProductEntity(1, "n", 1)).block());
+    assertEquals(1, buffer.pending(1).getInsert().getProductId());
+    assertNotNull(buffer.pending(1).getInsert().getId());
+
+    buffer.flush().block();
+
+    assertNull(buffer.pending(1));
+    assertEquals(1, flushed.size());
+  }
+
+  @Test
+  void secondPendingCreateIsRejected() {
+    assertTrue(buffer.create(new ProductEntity(1, "n", 1)).block());
+    assertFalse(buffer.create(new ProductEntity(1, "n", 1)).block());
+  }
+
+  @Test
+  void writesToTheSameProductIdAreCoalesced() {
+    buffer.create(new ProductEntity(1, "a", 1)).block();
+    buffer.delete(1).block();
+    buffer.create(new ProductEntity(1, "b", 1)).block();
+    buffer.delete(2).block();
+
+    buffer.flush().block();
+
+    List<ProductWrite> writes = flushed.get(0);
+    assertEquals(2, writes.size());
+    assertTrue(writes.get(0).isDeleteFirst());
+    assertEquals("b", writes.get(0).getInsert().getName());
+    assertTrue(writes.get(1).isDeleteFirst());
+    assertNull(writes.get(1).getInsert());
+  }
+
+  @Test
+  void writesAfterARejectedOneAreResubmitted() {
+    buffer.create(new ProductEntity(13, "n", 1)).block();
+    buffer.create(new ProductEntity(14, "n", 1)).block();
+
+    buffer.flush().block();
+
+    assertEquals(List.of(13), failed);
+    assertEquals(2, flushed.size());
+    assertEquals(14, flushed.get(1).get(0).getProductId());
+  }
+
+  @Test
+  void writesAreEnqueuedOnSubscription() {
+    Mono<Boolean> create = buffer.create(new ProductEntity(1, "n", 1));
+    Mono<Void> delete = buffer.delete(2);
+    assertNull(buffer.pending(1));
+    assertNull(buffer.pending(2));
+
+    create.block();
+    delete.block();
+    assertNotNull(buffer.pending(1));
+    assertNotNull(buffer.pending(2));
+  }
+
+  @Test
+  void failedFlushRequeuesOnlyTheUnappliedWrites() {
+    // Rejects productId 13 as in setup, then fails the resubmission once
+    doAnswer(invocation -> {
+      List<ProductWrite> writes = new ArrayList<>(invocation.getArgument(0));
+      flushed.add(writes);
+      if (flushed.size() == 1) {
+        return Mono.just(1);
+      }
+      return flushed.size() == 2 ? Mono.error(new IllegalStateException("unavailable")) : Mono.just(-1);
+    }).when(persistence).writeOrdered(any());
+    buffer.create(new ProductEntity(12, "n", 1)).block();
+    buffer.create(new ProductEntity(13, "n", 1)).block();
+    buffer.create(new ProductEntity(14, "n", 1)).block();
+
+    buffer.flush().block();
+    assertEquals(14, buffer.pending(14).getProductId());
+    assertNull(buffer.pending(12));
+    buffer.flush().block();
+
+    assertEquals(List.of(13), failed);
+    assertEquals(3, flushed.size());
+    assertEquals(List.of(14), flushed.get(2).stream().map(ProductWrite::getProductId).toList());
+  }
+}
@@ -0,0 +1,134 @@
+package com.luca.core.product;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.luca.core.product.mapper.ProductDtoMapper;
+import com.luca.core.product.web.codec.ProductFormat;
+import com.luca.core.product.web.codec.ProtobufCodecConfiguration;
+import com.luca.core.product.web.codec.ProtobufJsonDecoder;
+import com.luca.core.product.web.codec.TimedEncoder;
+import com.luca.core.product.web.codec.UnifiedFormatHandlerMapping;
+import com.luca.core.product.web.codec.UnifiedFormats;
+import com.luca.core.product.web.services.ProductService;
+import com.luca.product.protobuf.ProductProto.Product;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.EncoderHttpMessageWriter;
+import org.springframework.http.codec.HttpMessageWriter;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.reactive.result.method.RequestMappingInfo;
+
+class UnifiedFormatTests {
+
+  private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+    .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+    .build();
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+  private final UnifiedFormats formats =
+    new UnifiedFormats(Mappers.getMapper(ProductDtoMapper.class), objectMapper, registry);
+
+  @Test
+  void negotiatesFormats() {
+    assertEquals(ProductFormat.PROTOBUF, ProductFormat.negotiate(null));
+    assertEquals(ProductFormat.PROTOBUF, ProductFormat.negotiate("*/*"));
+    assertEquals(ProductFormat.JSON, ProductFormat.negotiate("application/json"));
+    assertEquals(ProductFormat.PROTOBUF_JSON, ProductFormat.negotiate("application/x-protobuf+json"));
+    assertEquals(ProductFormat.PROTOBUF_JSON,
+      ProductFormat.negotiate("application/json;q=0.5, application/x-protobuf+json"));
+    assertNull(ProductFormat.negotiate("text/html"));
+    assertNull(ProductFormat.negotiate("not a media type"));
+  }
+
+  @Test
+  void rendersJsonAsProductServiceJson() throws Exception {
+    Product product = product();
+    com.luca.core.product.web.dto.Product dto = new com.luca.core.product.web.dto.Product(
+      product.getProductId(), product.getName(), product.getWeight(), product.getServiceAddress());
+
+    byte[] json = formats.toJson(ProductFormat.JSON, product);
+
+    assertArrayEquals(objectMapper.writeValueAsBytes(dto), json);
+  }
+
+  @Test
+  void readsBackProtobufJson() {
+    Product product = product();
+    byte[] json = formats.toJson(ProductFormat.PROTOBUF_JSON, product);
+
+    Object decoded = new ProtobufJsonDecoder().decode(DefaultDataBufferFactory.sharedInstance.wrap(json),
+      ResolvableType.forClass(Product.class), ProductFormat.PROTOBUF_JSON.mediaType(), Map.of());
+
+    assertEquals(product, decoded);
+  }
+
+  @Test
+  void timesRenderedBodies() {
+    byte[] json = formats.render(ProductFormat.JSON, () -> formats.toJson(ProductFormat.JSON, product()));
+
+    assertTrue(json.length > 0);
+    assertEquals(1, registry.get("product.format.encode").tag("format", "json").timer().count());
+    assertEquals(0, registry.get("product.format.encode").tag("format", "protobuf").timer().count());
+  }
+
+  @Test
+  void widensAllButStreamingMappings() throws Exception {
+    StaticApplicationContext context = new StaticApplicationContext();
+    context.refresh();
+    Mappings mappings = new Mappings();
+    mappings.setApplicationContext(context);
+    mappings.afterPropertiesSet();
+
+    RequestMappingInfo get = mappings.of(ProductService.class.getMethod("getProduct", int.class, String.class, String.class));
+    assertEquals(Set.of(ProductFormat.values()), formatsOf(get.getProducesCondition().getProducibleMediaTypes()));
+
+    RequestMappingInfo create = mappings.of(ProductService.class.getMethod("createProduct", Product.class));
+    assertEquals(Set.of(ProductFormat.values()), formatsOf(create.getConsumesCondition().getConsumableMediaTypes()));
+
+    RequestMappingInfo stream = mappings.of(ProductService.class.getMethod("streamProducts"));
+    assertEquals(Set.of(ProductFormat.PROTOBUF), formatsOf(stream.getProducesCondition().getProducibleMediaTypes()));
+  }
+
+  @Test
+  void registersJsonEncodersAheadOfJackson() {
+    ServerCodecConfigurer configurer = ServerCodecConfigurer.create();
+    new ProtobufCodecConfiguration(false, true, formats).configureHttpMessageCodecs(configurer);
+
+    for (ProductFormat format : ProductFormat.values()) {
+      HttpMessageWriter<?> writer = configurer.getWriters().stream()
+        .filter(candidate -> candidate.canWrite(ResolvableType.forClass(Product.class), format.mediaType()))
+        .findFirst()
+        .orElseThrow();
+      assertInstanceOf(TimedEncoder.class, ((EncoderHttpMessageWriter<?>) writer).getEncoder(), format.name());
+    }
+  }
+
+  private static Set<ProductFormat> formatsOf(Set<MediaType> mediaTypes) {
+    return mediaTypes.stream().map(ProductFormat::of).collect(Collectors.toSet());
+  }
+
+  private static Product product() {
+    return Product.newBuilder().setProductId(7).setName("Kettle \u00e9").setWeight(1250)
+      .setServiceAddress("host/10.0.0.1:7001").build();
+  }
+
+  private static class Mappings extends UnifiedFormatHandlerMapping {
+
+    RequestMappingInfo of(Method method) {
+      return getMappingForMethod(method, ProductService.class);
+    }
+  }
+}
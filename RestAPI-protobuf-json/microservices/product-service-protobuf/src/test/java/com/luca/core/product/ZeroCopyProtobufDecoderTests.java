@@ -0,0 +1,87 @@
+package com.luca.core.product;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.luca.core.product.web.codec.ProtobufCodecConfiguration;
+import com.luca.core.product.web.codec.UnifiedFormats;
+import com.luca.core.product.web.codec.ZeroCopyProtobufDecoder;
+import com.luca.product.protobuf.ProductProto.Product;
+import com.luca.product.protobuf.ProductProto.ProductList;
+import io.netty.buffer.PooledByteBufAllocator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.codec.DecoderHttpMessageReader;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+class ZeroCopyProtobufDecoderTests {
+
+  private final NettyDataBufferFactory bufferFactory = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+
+  @Test
+  void decodesAcrossPooledDirectBuffers() {
+    ProductList products = products(50);
+    byte[] bytes = products.toByteArray();
+
+    ZeroCopyProtobufDecoder decoder = new ZeroCopyProtobufDecoder();
+    decoder.setMaxMessageSize(bytes.length);
+
+    StepVerifier.create(decoder.decodeToMono(chunks(bytes, 3), ResolvableType.forClass(ProductList.class), null, Map.of()))
+      .expectNext(products)
+      .verifyComplete();
+  }
+
+  @Test
+  void rejectsMessagesAboveTheMaxSize() {
+    byte[] bytes = products(50).toByteArray();
+
+    ZeroCopyProtobufDecoder decoder = new ZeroCopyProtobufDecoder();
+    decoder.setMaxMessageSize(bytes.length - 1);
+
+    StepVerifier.create(decoder.decodeToMono(chunks(bytes, 3), ResolvableType.forClass(ProductList.class), null, Map.of()))
+      .verifyError(DataBufferLimitException.class);
+  }
+
+  @Test
+  void replacesTheDefaultDecoderWithTheMaxInMemorySize() {
+    ServerCodecConfigurer configurer = ServerCodecConfigurer.create();
+    configurer.defaultCodecs().maxInMemorySize(1024);
+    new ProtobufCodecConfiguration(true, false, (UnifiedFormats) null).configureHttpMessageCodecs(configurer);
+
+    ZeroCopyProtobufDecoder decoder = configurer.getReaders().stream()
+      .filter(reader -> reader instanceof DecoderHttpMessageReader<?>)
+      .map(reader -> ((DecoderHttpMessageReader<?>) reader).getDecoder())
+      .filter(ZeroCopyProtobufDecoder.class::isInstance)
+      .map(ZeroCopyProtobufDecoder.class::cast)
+      .findFirst()
+      .orElseThrow();
+    assertEquals(1024, decoder.getMaxMessageSize());
+  }
+
+  private static ProductList products(int count) {
+    ProductList.Builder products = ProductList.newBuilder();
+    for (int i = 1; i <= count; i++) {
+      products.addProducts(Product.newBuilder().setProductId(i).setName("Product " + i).setWeight(i * 10));
+    }
+    return products.build();
+  }
+
+  private Flux<DataBuffer> chunks(byte[] bytes, int count) {
+    List<DataBuffer> buffers = new ArrayList<>();
+    int size = (bytes.length + count - 1) / count;
+    for (int from = 0; from < bytes.length; from += size) {
+      DataBuffer buffer = bufferFactory.allocateBuffer(size);
+      buffer.write(Arrays.copyOfRange(bytes, from, Math.min(bytes.length, from + size)));
+      buffers.add(buffer);
+    }
+    return Flux.fromIterable(buffers);
+  }
+}
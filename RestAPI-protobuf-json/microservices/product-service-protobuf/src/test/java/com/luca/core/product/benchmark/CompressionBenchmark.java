@@ -0,0 +1,108 @@
+package com.luca.core.product.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.luca.core.product.web.compression.CompressionFilter;
+import com.luca.core.product.web.compression.ContentCoding;
+import com.luca.product.protobuf.ProductProto.Product;
+import com.luca.product.protobuf.ProductProto.ProductList;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.netty.buffer.PooledByteBufAllocator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.adapter.DefaultServerWebExchange;
+import org.springframework.web.server.i18n.AcceptHeaderLocaleContextResolver;
+import org.springframework.web.server.session.DefaultWebSessionManager;
+import reactor.core.publisher.Mono;
+
+/**
+ * The CPU against bytes tradeoff of response compression: a list of 100 products, their
+ * names sharing words, encoded as Protobuf or as the JSON of product-service-json, written
+ * through the {@link CompressionFilter} in each coding, or raw for "identity". The size on
+ * the wire is printed at the start of each run.
+ *
+ * Add "-prof gc" to the command of {@link ProductEntityCodecBenchmark} for the bytes
+ * allocated per response, gc.alloc.rate.norm.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionBenchmark {
+
+  private static final String[] MATERIALS = {"Stainless steel", "Cast iron", "Bamboo", "Ceramic", "Copper", "Glass", "Oak"};
+
+  private static final String[] ITEMS = {"kettle", "frying pan", "cutting board", "teapot", "saucepan", "carafe", "bowl", "ladle"};
+
+  @Param({"protobuf", "json"})
+  public String format;
+
+  @Param({"identity", "gzip", "deflate", "zstd"})
+  public String coding;
+
+  private final NettyDataBufferFactory bufferFactory = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+
+  private final CompressionFilter filter = new CompressionFilter(new SimpleMeterRegistry(), 1024,
+    List.of(ContentCoding.ZSTD, ContentCoding.GZIP, ContentCoding.DEFLATE),
+    Map.of(ContentCoding.GZIP, 6, ContentCoding.DEFLATE, 6, ContentCoding.ZSTD, 3));
+
+  private final ServerCodecConfigurer codecConfigurer = ServerCodecConfigurer.create();
+
+  private byte[] body;
+
+  @Setup
+  public void setup() throws JsonProcessingException {
+    ProductList.Builder products = ProductList.newBuilder();
+    List<com.luca.core.product.web.dto.Product> dtos = new ArrayList<>();
+    for (int productId = 1; productId <= 100; productId++) {
+      Product product = Product.newBuilder().setProductId(1000 + productId * 37)
+        .setName(MATERIALS[productId % MATERIALS.length] + " " + ITEMS[productId % ITEMS.length] + " " + productId)
+        .setWeight(100 + productId * 13 % 2000).setServiceAddress("product-service/172.18.0.5:7001").build();
+      products.addProducts(product);
+      dtos.add(new com.luca.core.product.web.dto.Product(product.getProductId(), product.getName(),
+        product.getWeight(), product.getServiceAddress()));
+    }
+    body = format.equals("json")
+      ? new ObjectMapper().writeValueAsBytes(Map.of("products", dtos))
+      : products.build().toByteArray();
+    System.out.printf("%n%s in %s: %d bytes, %d on the wire%n", format, coding, body.length, respond());
+  }
+
+  @Benchmark
+  public long respond() {
+    ServerWebExchange exchange = new DefaultServerWebExchange(
+      MockServerHttpRequest.get("/products").header(HttpHeaders.ACCEPT_ENCODING, coding).build(),
+      new MockServerHttpResponse(bufferFactory), new DefaultWebSessionManager(), codecConfigurer,
+      new AcceptHeaderLocaleContextResolver());
+    filter.filter(exchange, decorated -> decorated.getResponse()
+      .writeWith(Mono.fromSupplier(() -> bufferFactory.allocateBuffer(body.length).write(body)))).block();
+
+    DataBuffer written = DataBufferUtils.join(((MockServerHttpResponse) exchange.getResponse()).getBody()).block();
+    long bytes = written.readableByteCount();
+    DataBufferUtils.release(written);
+    return bytes;
+  }
+}
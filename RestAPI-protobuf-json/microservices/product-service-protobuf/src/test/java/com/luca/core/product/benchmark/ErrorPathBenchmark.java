@@ -0,0 +1,126 @@
+package com.luca.core.product.benchmark;
+
+import com.luca.core.product.web.errors.ErrorResponses;
+import com.luca.core.product.web.exceptions.NotFoundException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.HttpHandler;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.reactive.config.EnableWebFlux;
+import org.springframework.web.server.adapter.WebHttpHandlerBuilder;
+import reactor.core.publisher.Mono;
+
+/**
+ * A 404 storm: GET /product/{productId} of missing products through WebFlux, with the
+ * service's error handling. "thrown" fails with a NotFoundException, handled by the
+ * GlobalControllerExceptionHandler, as before the fast error mode; "fast" returns the
+ * response of {@link ErrorResponses}. The lookup itself is left out, as the Bloom filter
+ * answers it without a query.
+ *
+ * Add "-prof gc" to the command of {@link ProductEntityCodecBenchmark} for the bytes
+ * allocated per request, gc.alloc.rate.norm.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 10, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ErrorPathBenchmark {
+
+  private AnnotationConfigApplicationContext context;
+
+  private HttpHandler handler;
+
+  private int productId;
+
+  @Setup
+  public void setup() {
+    context = new AnnotationConfigApplicationContext();
+    context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark",
+      Map.of("server.port", "7001", "app.errors.fast.enabled", "true")));
+    context.register(ErrorPathConfiguration.class, MissingProducts.class);
+    context.refresh();
+    handler = WebHttpHandlerBuilder.applicationContext(context).build();
+
+    if (get("/thrown/product/1") != HttpStatus.NOT_FOUND || get("/product/1") != HttpStatus.NOT_FOUND) {
+      throw new IllegalStateException("Expected 404 responses");
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    context.close();
+  }
+
+  @Benchmark
+  public HttpStatus thrown() {
+    return get("/thrown/product/" + nextProductId());
+  }
+
+  @Benchmark
+  public HttpStatus fast() {
+    return get("/product/" + nextProductId());
+  }
+
+  private int nextProductId() {
+    productId = productId == 1_000_000 ? 1 : productId + 1;
+    return productId;
+  }
+
+  private HttpStatus get(String path) {
+    MockServerHttpRequest request = MockServerHttpRequest.get(path).header("Accept", "application/x-protobuf").build();
+    MockServerHttpResponse response = new MockServerHttpResponse();
+    response.setWriteHandler(body -> body.doOnNext(DataBufferUtils::release).then());
+    handler.handle(request, response).block();
+    return (HttpStatus) response.getStatusCode();
+  }
+
+  @Configuration
+  @EnableWebFlux
+  @ComponentScan(basePackageClasses = ErrorResponses.class)
+  static class ErrorPathConfiguration {
+  }
+
+  @RestController
+  static class MissingProducts {
+
+    private final ErrorResponses errorResponses;
+
+    MissingProducts(ErrorResponses errorResponses) {
+      this.errorResponses = errorResponses;
+    }
+
+    @GetMapping(value = "/thrown/product/{productId}", produces = "application/x-protobuf")
+    Mono<ResponseEntity<byte[]>> thrown(@PathVariable("productId") int productId) {
+      return Mono.error(new NotFoundException("No product found for productId: " + productId));
+    }
+
+    @GetMapping(value = "/product/{productId}", produces = "application/x-protobuf")
+    Mono<ResponseEntity<byte[]>> fast(@PathVariable("productId") int productId) {
+      return Mono.just(errorResponses.notFound(productId));
+    }
+  }
+}
@@ -0,0 +1,128 @@
+package com.luca.core.product.benchmark;
+
+import com.luca.core.product.persistence.KeyedLayoutConfiguration;
+import com.luca.core.product.persistence.ProductEntity;
+import com.luca.core.product.persistence.ProductEntityCodec;
+import com.luca.core.product.persistence.ProductLayout;
+import com.luca.product.protobuf.ProductProto;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+/**
+ * Encode and decode of a product document by the {@link ProductEntityCodec} against the
+ * mapping converter followed by the driver's DocumentCodec, the path it replaces.
+ *
+ * Run from the service directory with:
+ * mvn test-compile dependency:build-classpath -Dmdep.includeScope=test -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main ProductEntityCodecBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductEntityCodecBenchmark {
+
+  @Param({"classic", "keyed"})
+  public String layout;
+
+  /**
+   * Whether the document carries the stored payload, see ProductEntity#getPayload.
+   */
+  @Param({"false", "true"})
+  public boolean payload;
+
+  private final EncoderContext encoderContext = EncoderContext.builder().build();
+
+  private final DecoderContext decoderContext = DecoderContext.builder().build();
+
+  private final DocumentCodec documentCodec = new DocumentCodec();
+
+  private ProductEntityCodec codec;
+
+  private MappingMongoConverter converter;
+
+  private ProductEntity entity;
+
+  private byte[] bson;
+
+  @Setup
+  public void setup() {
+    ProductLayout productLayout = ProductLayout.of(layout);
+    codec = new ProductEntityCodec(productLayout);
+
+    MongoCustomConversions conversions = productLayout == ProductLayout.KEYED
+      ? new KeyedLayoutConfiguration().mongoCustomConversions()
+      : new MongoCustomConversions(List.of());
+    MongoMappingContext mappingContext = new MongoMappingContext();
+    mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+    converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+    converter.setCustomConversions(conversions);
+    converter.afterPropertiesSet();
+
+    entity = new ProductEntity(123456, "Stainless steel kettle 1.7 l", 1250);
+    entity.setId(new ObjectId().toHexString());
+    entity.setVersion(3);
+    if (payload) {
+      entity.setPayload(ProductProto.Product.newBuilder()
+        .setProductId(entity.getProductId())
+        .setName(entity.getName())
+        .setWeight(entity.getWeight())
+        .build()
+        .toByteArray());
+    }
+    bson = encodeWithCodec();
+  }
+
+  @Benchmark
+  public byte[] encodeWithCodec() {
+    BasicOutputBuffer buffer = new BasicOutputBuffer(128);
+    codec.encode(new BsonBinaryWriter(buffer), entity, encoderContext);
+    return buffer.toByteArray();
+  }
+
+  @Benchmark
+  public byte[] encodeWithConverter() {
+    Document document = new Document();
+    converter.write(entity, document);
+    BasicOutputBuffer buffer = new BasicOutputBuffer(128);
+    documentCodec.encode(new BsonBinaryWriter(buffer), document, encoderContext);
+    return buffer.toByteArray();
+  }
+
+  @Benchmark
+  public ProductEntity decodeWithCodec() {
+    return codec.decode(new BsonBinaryReader(ByteBuffer.wrap(bson)), decoderContext);
+  }
+
+  @Benchmark
+  public ProductEntity decodeWithConverter() {
+    Document document = documentCodec.decode(new BsonBinaryReader(ByteBuffer.wrap(bson)), decoderContext);
+    return converter.read(ProductEntity.class, document);
+  }
+}
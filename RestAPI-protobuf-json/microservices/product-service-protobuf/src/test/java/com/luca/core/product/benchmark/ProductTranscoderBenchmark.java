@@ -0,0 +1,73 @@
+package com.luca.core.product.benchmark;
+
+import com.luca.core.product.mapper.ProductMapper;
+import com.luca.core.product.mapper.ProductTranscoder;
+import com.luca.core.product.persistence.ProductEntity;
+import com.luca.core.product.persistence.ProductEntityCodec;
+import com.luca.core.product.persistence.ProductLayout;
+import com.luca.product.protobuf.ProductProto.Product;
+import java.util.concurrent.TimeUnit;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DecoderContext;
+import org.bson.types.ObjectId;
+import org.mapstruct.factory.Mappers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The GET /product/{productId} body from a fetched document: transcoded by the
+ * {@link ProductTranscoder} against decoding a ProductEntity, mapping it and copying the
+ * Product through toBuilder() to set the serviceAddress.
+ *
+ * Add "-prof gc" to the command of {@link ProductEntityCodecBenchmark} for the bytes
+ * allocated per operation, gc.alloc.rate.norm.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductTranscoderBenchmark {
+
+  private final DecoderContext decoderContext = DecoderContext.builder().build();
+
+  private final ProductMapper mapper = Mappers.getMapper(ProductMapper.class);
+
+  private final ProductTranscoder transcoder = new ProductTranscoder(ProductLayout.CLASSIC);
+
+  private final ProductEntityCodec codec = new ProductEntityCodec(ProductLayout.CLASSIC);
+
+  private final String serviceAddress = "product-service/172.18.0.5:7001";
+
+  private final byte[] serviceAddressField = Product.newBuilder().setServiceAddress(serviceAddress).build().toByteArray();
+
+  private RawBsonDocument document;
+
+  @Setup
+  public void setup() {
+    ProductEntity entity = new ProductEntity(123456, "Stainless steel kettle 1.7 l", 1250);
+    entity.setId(new ObjectId().toHexString());
+    entity.setVersion(3);
+    document = new RawBsonDocument(entity, codec);
+  }
+
+  @Benchmark
+  public byte[] transcode() {
+    return transcoder.toProduct(document, serviceAddressField);
+  }
+
+  @Benchmark
+  public byte[] decodeAndMap() {
+    ProductEntity entity = document.decode(codec);
+    return mapper.entityToApi(entity).toBuilder().setServiceAddress(serviceAddress).build().toByteArray();
+  }
+}
@@ -0,0 +1,90 @@
+package com.luca.core.product.benchmark;
+
+import com.google.protobuf.Message;
+import com.luca.core.product.web.codec.ZeroCopyProtobufDecoder;
+import com.luca.product.protobuf.ProductProto.Product;
+import com.luca.product.protobuf.ProductProto.ProductList;
+import io.netty.buffer.PooledByteBufAllocator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.codec.protobuf.ProtobufDecoder;
+import reactor.core.publisher.Flux;
+
+/**
+ * Decoding of a request body held in pooled direct Netty buffers, as received by the server,
+ * by the {@link ZeroCopyProtobufDecoder} against the default ProtobufDecoder. Both pay the
+ * same for filling the buffers.
+ *
+ * Add "-prof gc" to the command of {@link ProductEntityCodecBenchmark} for the bytes
+ * allocated per request, gc.alloc.rate.norm.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProtobufDecoderBenchmark {
+
+  /**
+   * POST /product with one Product, or POST /products with a ProductList of 100.
+   */
+  @Param({"product", "batch"})
+  public String body;
+
+  private final NettyDataBufferFactory bufferFactory = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+
+  private final ProtobufDecoder defaultDecoder = new ProtobufDecoder();
+
+  private final ZeroCopyProtobufDecoder zeroCopyDecoder = new ZeroCopyProtobufDecoder();
+
+  private ResolvableType type;
+
+  private byte[] bytes;
+
+  @Setup
+  public void setup() {
+    Product product = Product.newBuilder().setProductId(123456).setName("Stainless steel kettle 1.7 l").setWeight(1250).build();
+    if (body.equals("product")) {
+      type = ResolvableType.forClass(Product.class);
+      bytes = product.toByteArray();
+    } else {
+      ProductList.Builder products = ProductList.newBuilder();
+      for (int i = 0; i < 100; i++) {
+        products.addProducts(product.toBuilder().setProductId(i + 1));
+      }
+      type = ResolvableType.forClass(ProductList.class);
+      bytes = products.build().toByteArray();
+    }
+  }
+
+  @Benchmark
+  public Message defaultDecoder() {
+    return defaultDecoder.decodeToMono(request(), type, null, Map.of()).block();
+  }
+
+  @Benchmark
+  public Message zeroCopyDecoder() {
+    return zeroCopyDecoder.decodeToMono(request(), type, null, Map.of()).block();
+  }
+
+  private Flux<DataBuffer> request() {
+    DataBuffer buffer = bufferFactory.allocateBuffer(bytes.length);
+    buffer.write(bytes);
+    return Flux.just(buffer);
+  }
+}